@@ -0,0 +1,106 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.hunspell.fsm.FSM;
+import org.apache.lucene.analysis.hunspell.fsm.FSMBuilder;
+
+/**
+ * WordStore that compiles the words into a minimal acyclic automaton, so that common prefixes and suffixes of the
+ * words are only stored once.  The words are sorted first, so that the automaton is built with the fast sorted
+ * algorithm.  Each word is annotated with the ID of its (shared) list of HunspellWords, and lookups walk the automaton
+ * without allocating.
+ */
+final class AutomatonWordStore implements WordStore {
+
+  // orders words char by char, as the sorted automaton builder expects them
+  private static final Comparator<char[]> CHAR_ORDER = new Comparator<char[]>() {
+    public int compare(char word1[], char word2[]) {
+      for (int i = 0; i < Math.min(word1.length, word2.length); i++) {
+        if (word1[i] != word2[i]) {
+          return word1[i] - word2[i];
+        }
+      }
+      return word1.length - word2.length;
+    }
+  };
+
+  private final FSM automaton;
+  private final List<List<HunspellWord>> wordLists = new ArrayList<List<HunspellWord>>();
+
+  /**
+   * Creates a new AutomatonWordStore containing the words of the given map
+   *
+   * @param words Map of words to the HunspellWords defined for them
+   */
+  AutomatonWordStore(CharArrayMap<List<HunspellWord>> words) {
+    char sortedWords[][] = new char[words.size()][];
+    int count = 0;
+    for (Object word : words.keySet()) {
+      sortedWords[count++] = (char[]) word;
+    }
+    Arrays.sort(sortedWords, CHAR_ORDER);
+
+    Map<List<HunspellWord>, Integer> ids = new HashMap<List<HunspellWord>, Integer>();
+    FSMBuilder builder = FSM.sortedBuilder();
+
+    for (char word[] : sortedWords) {
+      List<HunspellWord> wordList = words.get(word, 0, word.length);
+
+      Integer id = ids.get(wordList);
+      if (id == null) {
+        id = wordLists.size();
+        ids.put(wordList, id);
+        wordLists.add(wordList);
+      }
+      builder.put(CharBuffer.wrap(word), id);
+    }
+
+    automaton = builder.build();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<HunspellWord> lookup(char word[], int offset, int length) {
+    int state = automaton.find(word, offset, length);
+    if (state < 0 || automaton.annotationCount(state) == 0) {
+      return null;
+    }
+    return wordLists.get(automaton.annotation(state, 0));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void visit(final Visitor visitor) {
+    automaton.visit(new FSM.Visitor() {
+      public void visit(char word[], int length, int state) {
+        visitor.visit(word, 0, length, wordLists.get(automaton.annotation(state, 0)));
+      }
+    });
+  }
+}
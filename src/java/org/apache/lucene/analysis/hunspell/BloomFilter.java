@@ -0,0 +1,129 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Blocked Bloom filter over strings, answering whether a string is definitely not in the set it was built over.  The
+ * bits of each string are all set in a single block of 512 bits, the size of a cache line, so a lookup costs at most
+ * one cache miss however many hash functions are used, at the price of a slightly higher false positive rate than a
+ * classic Bloom filter of the same size.
+ *
+ * Once built the filter is only read, so a single filter can be used by any number of threads.
+ */
+final class BloomFilter {
+
+  private static final int BLOCK_BITS = 512;
+  private static final int BLOCK_LONGS = BLOCK_BITS / 64;
+
+  private final long bits[];
+  private final int blockMask;
+  private final int hashCount;
+
+  /**
+   * Creates a new, empty BloomFilter sized for the given number of strings and false positive rate
+   *
+   * @param expectedSize Number of strings that will be added to the filter
+   * @param falsePositiveRate Fraction of strings not added to the filter that it should accept, between 0 and 1
+   */
+  BloomFilter(int expectedSize, double falsePositiveRate) {
+    double ln2 = Math.log(2);
+    double bitCount = -Math.max(expectedSize, 1) * Math.log(falsePositiveRate) / (ln2 * ln2);
+
+    int blockCount = 1;
+    while (blockCount < (1 << 22) && (double) blockCount * BLOCK_BITS < bitCount) {
+      blockCount <<= 1;
+    }
+    bits = new long[blockCount * BLOCK_LONGS];
+    blockMask = blockCount - 1;
+
+    double bitsPerString = (double) blockCount * BLOCK_BITS / Math.max(expectedSize, 1);
+    hashCount = Math.max(1, Math.min(16, (int) Math.round(bitsPerString * ln2)));
+  }
+
+  /**
+   * Adds the String created from the given char array, offset and length to the filter
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   */
+  void add(char word[], int offset, int length) {
+    long hash = hash(word, offset, length);
+    int block = ((int) hash & blockMask) * BLOCK_LONGS;
+    int h1 = (int) (hash >>> 32);
+    int h2 = (int) (hash >>> 41) | 1;
+    for (int i = 0; i < hashCount; i++, h1 += h2) {
+      int bit = h1 & (BLOCK_BITS - 1);
+      bits[block + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Checks whether the String created from the given char array, offset and length may have been added to the filter
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return {@code false} if the String was definitely not added, {@code true} if it probably was
+   */
+  boolean mightContain(char word[], int offset, int length) {
+    long hash = hash(word, offset, length);
+    int block = ((int) hash & blockMask) * BLOCK_LONGS;
+    int h1 = (int) (hash >>> 32);
+    int h2 = (int) (hash >>> 41) | 1;
+    for (int i = 0; i < hashCount; i++, h1 += h2) {
+      int bit = h1 & (BLOCK_BITS - 1);
+      if ((bits[block + (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the size of the filter
+   *
+   * @return Size of the bit array of the filter in bytes
+   */
+  int sizeInBytes() {
+    return bits.length * 8;
+  }
+
+  // ================================================= Helper Methods ================================================
+
+  /**
+   * Computes a 64 bit hash code of the String created from the given char array, offset and length, whose bits are all
+   * well mixed so that disjoint ranges of them can be used as independent hash codes
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return Hash code of the String
+   */
+  private static long hash(char word[], int offset, int length) {
+    long code = length;
+    for (int i = offset; i < offset + length; i++) {
+      code = (code + word[i]) * 0x9E3779B97F4A7C15L;
+    }
+    code ^= code >>> 33;
+    code *= 0xFF51AFD7ED558CCDL;
+    code ^= code >>> 33;
+    code *= 0xC4CEB9FE1A85EC53L;
+    return code ^ (code >>> 33);
+  }
+}
@@ -0,0 +1,401 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.apache.lucene.analysis.hunspell.HunspellStemmer.StemSink;
+import org.apache.lucene.analysis.hunspell.fsm.FSM;
+import org.apache.lucene.analysis.hunspell.fsm.FSMBuilder;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Full form lexicon of a dictionary, mapping every form that has stems straight to them, so that a token is stemmed
+ * with a single walk of an automaton instead of stripping every affix matching it and looking up the results.  The
+ * forms are compiled into a minimal automaton, each annotated with the ID of its list of stem IDs, and lists and stems
+ * are shared between all forms having them.
+ *
+ * The lexicon is never modified once it is built, so a single lexicon can be used by any number of threads.
+ */
+final class FullFormLexicon {
+
+  private final FSM automaton;
+  private final char stems[][];
+  private final int stemLists[][];
+  private final int formCount;
+
+  /**
+   * Creates a new FullFormLexicon
+   *
+   * @param automaton Automaton holding the forms, each annotated with the ID of its list of stem IDs
+   * @param stems Stems, indexed by their ID
+   * @param stemLists Lists of stem IDs, indexed by their ID
+   * @param formCount Number of forms in the automaton
+   */
+  private FullFormLexicon(FSM automaton, char stems[][], int stemLists[][], int formCount) {
+    this.automaton = automaton;
+    this.stems = stems;
+    this.stemLists = stemLists;
+    this.formCount = formCount;
+  }
+
+  /**
+   * Passes the stems of the given word to the given StemSink, in the order they were added to the lexicon
+   *
+   * @param word Word to find the stems for
+   * @param length Length of the word
+   * @param sink StemSink the stems are passed to
+   */
+  void stem(char word[], int length, StemSink sink) {
+    int state = automaton.find(word, 0, length);
+    if (state < 0 || automaton.annotationCount(state) == 0) {
+      return;
+    }
+    for (int stemId : stemLists[automaton.annotation(state, 0)]) {
+      sink.addStem(stems[stemId], stems[stemId].length);
+    }
+  }
+
+  /**
+   * Returns the number of forms in the lexicon
+   *
+   * @return Number of forms that have stems
+   */
+  int getFormCount() {
+    return formCount;
+  }
+
+  /**
+   * Returns the number of distinct stems in the lexicon
+   *
+   * @return Number of distinct stems
+   */
+  int getStemCount() {
+    return stems.length;
+  }
+
+  /**
+   * Returns the size of the automaton holding the forms
+   *
+   * @return Size of the automaton in kilobytes
+   */
+  int getAutomatonSizeInKb() {
+    return automaton.sizeInKb();
+  }
+
+  /**
+   * Builds a FullFormLexicon from the given runs of forms and their stems, merging the runs in the order of their forms.
+   * A form that is in more than one run, or more than once in a run, is added once.
+   *
+   * @param runs Runs of forms and their stems, each sorted by {@link Run#sort()}
+   * @return FullFormLexicon holding the forms of the runs
+   */
+  static FullFormLexicon merge(List<Run> runs) {
+    PriorityQueue<Cursor> queue = new PriorityQueue<Cursor>(Math.max(runs.size(), 1));
+    for (Run run : runs) {
+      if (run.size > 0) {
+        queue.add(new Cursor(run));
+      }
+    }
+
+    Builder builder = new Builder();
+    Run previousRun = null;
+    int previousEntry = -1;
+    while (!queue.isEmpty()) {
+      Cursor cursor = queue.poll();
+      Run run = cursor.run;
+      int entry = run.order[cursor.next];
+      if (previousRun == null || Run.compare(previousRun, previousEntry, run, entry) != 0) {
+        builder.addForm(run.chars, run.offsets[entry], run.lengths[entry], run.stemLists.get(run.formStemLists[entry]));
+      }
+      previousRun = run;
+      previousEntry = entry;
+
+      if (++cursor.next < run.size) {
+        queue.add(cursor);
+      }
+    }
+    return builder.build();
+  }
+
+  // ================================================= Inner Classes =================================================
+
+  /**
+   * Run of forms and their stems, generated by a single thread.  The stems of a form are passed to the run as a
+   * StemSink, after which {@link #addForm(char[], int)} adds the form with them.  The chars of the forms are kept in a
+   * single arena and identical lists of stems are shared, so a run holds millions of forms in little memory.
+   */
+  static final class Run implements StemSink {
+
+    private final StringBuilder formStems = new StringBuilder();
+    private final Map<String, Integer> stemListIds = new HashMap<String, Integer>();
+    private final List<String> stemLists = new ArrayList<String>();
+
+    private char chars[] = new char[1024];
+    private int charCount;
+    private int offsets[] = new int[64];
+    private int lengths[] = new int[64];
+    private int formStemLists[] = new int[64];
+    private int order[];
+    private int size;
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addStem(char stem[], int length) {
+      formStems.append(stem, 0, length).append('\u0000');
+    }
+
+    /**
+     * Adds the given form with the stems passed to the run since the previous form.  Adding a form without stems does
+     * nothing.
+     *
+     * @param form Char array holding the form, starting at index 0
+     * @param length Length of the form
+     */
+    void addForm(char form[], int length) {
+      if (formStems.length() == 0) {
+        return;
+      }
+
+      String key = formStems.toString();
+      formStems.setLength(0);
+      Integer stemListId = stemListIds.get(key);
+      if (stemListId == null) {
+        stemListId = stemLists.size();
+        stemListIds.put(key, stemListId);
+        stemLists.add(key);
+      }
+
+      if (size == offsets.length) {
+        offsets = ArrayUtil.grow(offsets);
+        lengths = ArrayUtil.grow(lengths);
+        formStemLists = ArrayUtil.grow(formStemLists);
+      }
+      if (charCount + length > chars.length) {
+        chars = Arrays.copyOf(chars, ArrayUtil.getNextSize(charCount + length));
+      }
+      System.arraycopy(form, 0, chars, charCount, length);
+      offsets[size] = charCount;
+      lengths[size] = length;
+      formStemLists[size] = stemListId;
+      charCount += length;
+      size++;
+    }
+
+    /**
+     * Sorts the forms of the run, so that runs can be merged
+     */
+    void sort() {
+      order = new int[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+      sort(0, size - 1);
+    }
+
+    /**
+     * Sorts the given range of the order of the forms, using quicksort with a median of three pivot
+     *
+     * @param low Index of the first entry of the range
+     * @param high Index of the last entry of the range
+     */
+    private void sort(int low, int high) {
+      while (high - low > 16) {
+        int middle = (low + high) >>> 1;
+        if (compare(this, order[middle], this, order[low]) < 0) {
+          swap(low, middle);
+        }
+        if (compare(this, order[high], this, order[low]) < 0) {
+          swap(low, high);
+        }
+        if (compare(this, order[high], this, order[middle]) < 0) {
+          swap(middle, high);
+        }
+        int pivot = order[middle];
+
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (compare(this, order[i], this, pivot) < 0) {
+            i++;
+          }
+          while (compare(this, order[j], this, pivot) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(i++, j--);
+          }
+        }
+
+        // recurse into the smaller part, so that the stack stays shallow
+        if (j - low < high - i) {
+          sort(low, j);
+          low = i;
+        } else {
+          sort(i, high);
+          high = j;
+        }
+      }
+
+      for (int i = low + 1; i <= high; i++) {
+        for (int j = i; j > low && compare(this, order[j], this, order[j - 1]) < 0; j--) {
+          swap(j, j - 1);
+        }
+      }
+    }
+
+    /**
+     * Swaps the given entries of the order of the forms
+     *
+     * @param i Index of the first entry
+     * @param j Index of the second entry
+     */
+    private void swap(int i, int j) {
+      int entry = order[i];
+      order[i] = order[j];
+      order[j] = entry;
+    }
+
+    /**
+     * Compares the forms of the given entries of the given runs, char by char
+     *
+     * @param run1 Run holding the first form
+     * @param entry1 Entry of the first form
+     * @param run2 Run holding the second form
+     * @param entry2 Entry of the second form
+     * @return Negative if the first form sorts before the second, positive if after, {@code 0} if they are equal
+     */
+    static int compare(Run run1, int entry1, Run run2, int entry2) {
+      int offset1 = run1.offsets[entry1];
+      int offset2 = run2.offsets[entry2];
+      int length1 = run1.lengths[entry1];
+      int length2 = run2.lengths[entry2];
+      for (int i = 0; i < Math.min(length1, length2); i++) {
+        int diff = run1.chars[offset1 + i] - run2.chars[offset2 + i];
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      return length1 - length2;
+    }
+  }
+
+  /**
+   * Position in a sorted Run while merging runs, ordered by the form at the position
+   */
+  private static final class Cursor implements Comparable<Cursor> {
+
+    private final Run run;
+    private int next;
+
+    /**
+     * Creates a new Cursor at the first form of the given run
+     *
+     * @param run Sorted Run to walk through
+     */
+    Cursor(Run run) {
+      this.run = run;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int compareTo(Cursor other) {
+      return Run.compare(run, run.order[next], other.run, other.run.order[other.next]);
+    }
+  }
+
+  /**
+   * Builds a FullFormLexicon from forms added in sorted order and their stems, interning the stems and lists of stems
+   */
+  private static final class Builder {
+
+    private final FSMBuilder automaton = FSM.sortedBuilder();
+    private final Map<String, Integer> stemIds = new HashMap<String, Integer>();
+    private final List<char[]> stems = new ArrayList<char[]>();
+    private final Map<String, Integer> stemListIds = new HashMap<String, Integer>();
+    private final List<int[]> stemLists = new ArrayList<int[]>();
+    private int formCount;
+
+    /**
+     * Adds the given form with the given stems
+     *
+     * @param form Char array holding the form
+     * @param offset Offset in the char array that the form starts at
+     * @param length Length from the offset that the form is
+     * @param stemList Stems of the form, each followed by a NUL char
+     */
+    void addForm(char form[], int offset, int length, String stemList) {
+      Integer stemListId = stemListIds.get(stemList);
+      if (stemListId == null) {
+        stemListId = stemLists.size();
+        stemListIds.put(stemList, stemListId);
+        stemLists.add(internStems(stemList));
+      }
+      automaton.put(CharBuffer.wrap(form, offset, length), stemListId);
+      formCount++;
+    }
+
+    /**
+     * Builds the FullFormLexicon holding the added forms
+     *
+     * @return FullFormLexicon holding the added forms
+     */
+    FullFormLexicon build() {
+      return new FullFormLexicon(
+          automaton.build(),
+          stems.toArray(new char[stems.size()][]),
+          stemLists.toArray(new int[stemLists.size()][]),
+          formCount);
+    }
+
+    /**
+     * Interns the stems of the given list, returning their IDs
+     *
+     * @param stemList Stems, each followed by a NUL char
+     * @return IDs of the stems, in the order of the list
+     */
+    private int[] internStems(String stemList) {
+      List<Integer> ids = new ArrayList<Integer>();
+      for (int start = 0, end; start < stemList.length(); start = end + 1) {
+        end = stemList.indexOf('\u0000', start);
+        String stem = stemList.substring(start, end);
+        Integer id = stemIds.get(stem);
+        if (id == null) {
+          id = stems.size();
+          stemIds.put(stem, id);
+          stems.add(stem.toCharArray());
+        }
+        ids.add(id);
+      }
+
+      int idArray[] = new int[ids.size()];
+      for (int i = 0; i < idArray.length; i++) {
+        idArray[i] = ids.get(i);
+      }
+      return idArray;
+    }
+  }
+}
@@ -17,6 +17,9 @@ package org.apache.lucene.analysis.hunspell;
  * limitations under the License.
  */
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -24,27 +27,74 @@ import java.util.regex.Pattern;
  */
 public class HunspellAffix {
 
+  // chars with a meaning in regular expressions, outside and inside of char classes
+  private static final String REGEX_CHARS = "\\^$|?*+(){}[]";
+  private static final String REGEX_CLASS_CHARS = "\\[]&-^";
+
   private String append; // the affix itself, what is appended
   private char appendFlags[]; // continuation class flags
+  private long appendFlagIds[]; // bitset of the dense IDs of the continuation class flags
   private String strip;
   
   private String condition;
-  private Pattern conditionPattern;
+  private Pattern conditionPattern; // only compiled for conditions the char class matcher can't handle
+  private char conditionClasses[][]; // chars allowed at each position of the condition, null for any char
+  private boolean conditionNegated[]; // whether the chars at each position of the condition are disallowed instead
+  private boolean conditionAtEnd; // whether the condition applies to the end of the word, rather than its start
   
   private char flag;
+  private int flagId; // dense ID assigned by the dictionary
 
   private boolean crossProduct;
 
   /**
    * Checks whether the String defined by the provided char array, offset and length, meets the condition of this affix
    *
-   * @param input Char array where the String will be created from
+   * @param text Char array where the String will be created from
    * @param offset Offset in the char array the String will start at
    * @param length Number of characters from the offset that define the String
    * @return {@code true} if the String meets the condition, {@code false} otherwise
    */
+  public boolean checkCondition(char text[], int offset, int length) {
+    if (conditionClasses == null) {
+      return conditionPattern.matcher(CharBuffer.wrap(text, offset, length)).matches();
+    }
+
+    int size = conditionClasses.length;
+    if (length < size) {
+      return false;
+    }
+    int start = conditionAtEnd ? offset + length - size : offset;
+    for (int i = 0; i < size; i++) {
+      if (!matchesClass(i, text[start + i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the provided text meets the condition of this affix
+   *
+   * @param text Text to check
+   * @return {@code true} if the text meets the condition, {@code false} otherwise
+   */
   public boolean checkCondition(CharSequence text) {
-    return conditionPattern.matcher(text).matches();
+    if (conditionClasses == null) {
+      return conditionPattern.matcher(text).matches();
+    }
+
+    int size = conditionClasses.length;
+    if (text.length() < size) {
+      return false;
+    }
+    int start = conditionAtEnd ? text.length() - size : 0;
+    for (int i = 0; i < size; i++) {
+      if (!matchesClass(i, text.charAt(start + i))) {
+        return false;
+      }
+    }
+    return true;
   }
 
   // ================================================= Getters / Setters =============================================
@@ -85,6 +135,24 @@ public class HunspellAffix {
     this.appendFlags = appendFlags;
   }
 
+  /**
+   * Returns the bitset of the dense IDs of the flags defined for the affix append
+   *
+   * @return Bitset of the dense IDs of the flags defined for the affix append, or {@code null} if no flags are defined
+   */
+  long[] getAppendFlagIds() {
+    return appendFlagIds;
+  }
+
+  /**
+   * Sets the bitset of the dense IDs of the flags defined for the affix append
+   *
+   * @param appendFlagIds Bitset of the dense IDs of the flags defined for the affix append
+   */
+  void setAppendFlagIds(long[] appendFlagIds) {
+    this.appendFlagIds = appendFlagIds;
+  }
+
   /**
    * Returns the stripping characters defined for the affix
    *
@@ -120,6 +188,19 @@ public class HunspellAffix {
    */
   public void setCondition(String condition, String pattern) {
     this.condition = condition;
+    this.conditionPattern = null;
+    this.conditionClasses = null;
+    this.conditionNegated = null;
+
+    // the usual ".*condition" and "condition.*" patterns only look at a fixed number of chars at one end of the word
+    if (pattern.equals(".*" + condition) || pattern.equals(condition + ".*")) {
+      conditionAtEnd = pattern.startsWith(".*");
+      if (parseConditionClasses(condition)) {
+        return;
+      }
+      conditionClasses = null;
+      conditionNegated = null;
+    }
     this.conditionPattern = Pattern.compile(pattern);
   }
 
@@ -141,6 +222,24 @@ public class HunspellAffix {
     this.flag = flag;
   }
 
+  /**
+   * Returns the dense ID the dictionary assigned to the affix flag
+   *
+   * @return Dense ID of the affix flag
+   */
+  int getFlagId() {
+    return flagId;
+  }
+
+  /**
+   * Sets the dense ID the dictionary assigned to the affix flag
+   *
+   * @param flagId Dense ID of the affix flag
+   */
+  void setFlagId(int flagId) {
+    this.flagId = flagId;
+  }
+
   /**
    * Returns whether the affix is defined as cross product
    *
@@ -158,4 +257,77 @@ public class HunspellAffix {
   public void setCrossProduct(boolean crossProduct) {
     this.crossProduct = crossProduct;
   }
+
+  // ================================================= Helper Methods ================================================
+
+  /**
+   * Parses the given hunspell condition into a char class for each of its positions.  Conditions are made up of
+   * literal chars, {@code .} for any char, and {@code [abc]} or {@code [^abc]} classes.  Anything else that could
+   * carry a meaning in a regular expression is left to the regular expression
+   *
+   * @param condition Condition to parse
+   * @return {@code true} if the condition could be parsed into char classes, {@code false} otherwise
+   */
+  private boolean parseConditionClasses(String condition) {
+    List<char[]> classes = new ArrayList<char[]>();
+    List<Boolean> negated = new ArrayList<Boolean>();
+
+    for (int i = 0; i < condition.length(); i++) {
+      char c = condition.charAt(i);
+      if (c == '.') {
+        classes.add(null);
+        negated.add(false);
+      } else if (c == '[') {
+        int end = condition.indexOf(']', i + 1);
+        if (end < 0) {
+          return false;
+        }
+        boolean negate = end > i + 1 && condition.charAt(i + 1) == '^';
+        char chars[] = condition.substring(negate ? i + 2 : i + 1, end).toCharArray();
+        if (chars.length == 0) {
+          return false;
+        }
+        for (char member : chars) {
+          if (REGEX_CLASS_CHARS.indexOf(member) >= 0) {
+            return false;
+          }
+        }
+        classes.add(chars);
+        negated.add(negate);
+        i = end;
+      } else if (REGEX_CHARS.indexOf(c) >= 0) {
+        return false;
+      } else {
+        classes.add(new char[] {c});
+        negated.add(false);
+      }
+    }
+
+    conditionClasses = classes.toArray(new char[classes.size()][]);
+    conditionNegated = new boolean[negated.size()];
+    for (int i = 0; i < conditionNegated.length; i++) {
+      conditionNegated[i] = negated.get(i);
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the given char is allowed at the given position of the condition
+   *
+   * @param position Position in the condition
+   * @param c Char to check
+   * @return {@code true} if the char is allowed, {@code false} otherwise
+   */
+  private boolean matchesClass(int position, char c) {
+    char chars[] = conditionClasses[position];
+    if (chars == null) {
+      return true;
+    }
+    for (char member : chars) {
+      if (member == c) {
+        return !conditionNegated[position];
+      }
+    }
+    return conditionNegated[position];
+  }
 }
@@ -17,19 +17,34 @@ package org.apache.lucene.analysis.hunspell;
  * limitations under the License.
  */
 
+import org.apache.lucene.analysis.hunspell.fsm.FSM;
+import org.apache.lucene.analysis.hunspell.fsm.FSMBuilder;
+import org.apache.lucene.analysis.hunspell.fsm.ReverseSequence;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.Version;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class HunspellDictionary {
 
   static final HunspellWord NOFLAGS = new HunspellWord();
+  private static final List<HunspellWord> NOFLAGS_LIST = Collections.singletonList(NOFLAGS);
   
   private static final String PREFIX_KEY = "PFX";
   private static final String SUFFIX_KEY = "SFX";
@@ -42,9 +57,16 @@ public class HunspellDictionary {
   private static final String PREFIX_CONDITION_REGEX_PATTERN = "%s.*";
   private static final String SUFFIX_CONDITION_REGEX_PATTERN = ".*%s";
 
-  private CharArrayMap<List<HunspellWord>> words;
+  private WordStore words;
   private CharArrayMap<List<HunspellAffix>> prefixes;
   private CharArrayMap<List<HunspellAffix>> suffixes;
+  private FSM prefixAutomaton; // appends, annotated with the index of their group in prefixGroups
+  private final List<List<HunspellAffix>> prefixGroups = new ArrayList<List<HunspellAffix>>();
+  private FSM suffixAutomaton; // reversed appends, annotated with the index of their group in suffixGroups
+  private final List<List<HunspellAffix>> suffixGroups = new ArrayList<List<HunspellAffix>>();
+  private char affixFlags[]; // sorted flags of all affixes, the index of a flag being its dense ID
+  private volatile SharedStemCache stemCache;
+  private volatile BloomFilter formFilter; // all words and affixed forms of them, to reject unknown words fast
 
   private FlagParsingStrategy flagParsingStrategy = new SimpleFlagParsingStrategy(); // Default flag parsing strategy
 
@@ -71,12 +93,115 @@ public class HunspellDictionary {
    * @throws ParseException Can be thrown if the content of the files does not meet expected formats
    */
   public HunspellDictionary(InputStream affix, List<InputStream> dictionaries) throws IOException, ParseException {
+    this(affix, dictionaries, false);
+  }
+
+  /**
+   * Creates a new HunspellDictionary containing the information read from the provided InputStreams to hunspell affix
+   * and dictionary files
+   *
+   * @param affix InputStream for reading the hunspell affix file
+   * @param dictionaries InputStreams for reading the hunspell dictionary file
+   * @param automaton Whether the words should be compiled into a minimal automaton, which takes longer to load but
+   *                  needs several times less memory than the default hash based storage
+   * @throws IOException Can be thrown while reading from the InputStreams
+   * @throws ParseException Can be thrown if the content of the files does not meet expected formats
+   */
+  public HunspellDictionary(InputStream affix, List<InputStream> dictionaries, boolean automaton) throws IOException, ParseException {
+    this(affix, dictionaries, automaton, 1);
+  }
+
+  /**
+   * Creates a new HunspellDictionary containing the information read from the provided InputStreams to hunspell affix
+   * and dictionary files
+   *
+   * @param affix InputStream for reading the hunspell affix file
+   * @param dictionaries InputStreams for reading the hunspell dictionary file
+   * @param automaton Whether the words should be compiled into a minimal automaton, which takes longer to load but
+   *                  needs several times less memory than the default hash based storage
+   * @param threads Number of threads used to read the dictionary files.  With more than one thread, the files are
+   *                split into line aligned chunks that are parsed in parallel and then merged
+   * @throws IOException Can be thrown while reading from the InputStreams
+   * @throws ParseException Can be thrown if the content of the files does not meet expected formats
+   */
+  public HunspellDictionary(
+      InputStream affix,
+      List<InputStream> dictionaries,
+      boolean automaton,
+      int threads) throws IOException, ParseException {
     String encoding = getDictionaryEncoding(affix);
     CharsetDecoder decoder = getJavaEncoding(encoding);
     readAffixFile(affix, decoder);
-    words = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, 65535 /* guess */, false);
-    for (InputStream dictionary : dictionaries)
-      readDictionaryFile(dictionary, decoder);
+    assignFlagIds();
+    compileAffixes();
+    CharArrayMap<List<HunspellWord>> wordMap = threads > 1
+        ? readDictionaryFiles(dictionaries, decoder.charset(), threads)
+        : readDictionaryFiles(dictionaries, decoder.charset());
+    words = automaton ? new AutomatonWordStore(wordMap) : new WordTable(wordMap);
+  }
+
+  /**
+   * Creates a new, empty HunspellDictionary, used when opening compiled dictionaries
+   */
+  private HunspellDictionary() {
+  }
+
+  /**
+   * Opens a dictionary compiled by {@link HunspellDictionaryCompiler}.  The file is memory mapped and the words are
+   * looked up straight from the mapped file, so opening takes constant time regardless of the number of words, and
+   * processes opening the same file share its pages.
+   *
+   * @param file Compiled dictionary file
+   * @return HunspellDictionary serving the content of the compiled file
+   * @throws IOException Can be thrown while mapping the file, or if it is not a compiled dictionary of a supported
+   *                     version
+   */
+  public static HunspellDictionary open(File file) throws IOException {
+    ByteBuffer buffer;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    } finally {
+      raf.close();
+    }
+
+    if (buffer.getInt() != HunspellDictionaryCompiler.MAGIC) {
+      throw new IOException("Not a compiled hunspell dictionary: " + file);
+    }
+    int version = buffer.getInt();
+    if (version != HunspellDictionaryCompiler.VERSION) {
+      throw new IOException("Unsupported compiled hunspell dictionary version " + version + " (expected " +
+          HunspellDictionaryCompiler.VERSION + "): " + file);
+    }
+
+    HunspellDictionary dictionary = new HunspellDictionary();
+    dictionary.prefixes = readAffixes(buffer, PREFIX_CONDITION_REGEX_PATTERN);
+    dictionary.suffixes = readAffixes(buffer, SUFFIX_CONDITION_REGEX_PATTERN);
+    dictionary.assignFlagIds();
+    dictionary.compileAffixes();
+
+    List<HunspellWord> flagSets = new ArrayList<HunspellWord>();
+    for (int i = buffer.getInt(); i > 0; i--) {
+      char flags[] = readChars(buffer);
+      flagSets.add(flags == null ? NOFLAGS : new HunspellWord(flags, dictionary.getFlagIds(flags)));
+    }
+
+    List<List<HunspellWord>> wordLists = new ArrayList<List<HunspellWord>>();
+    for (int i = buffer.getInt(); i > 0; i--) {
+      int size = buffer.getInt();
+      if (size == 1) {
+        wordLists.add(Collections.singletonList(flagSets.get(buffer.getInt())));
+        continue;
+      }
+      List<HunspellWord> wordList = new ArrayList<HunspellWord>(size);
+      for (int j = 0; j < size; j++) {
+        wordList.add(flagSets.get(buffer.getInt()));
+      }
+      wordLists.add(wordList);
+    }
+
+    dictionary.words = new MappedWordStore(buffer.slice(), wordLists);
+    return dictionary;
   }
 
   /**
@@ -88,7 +213,7 @@ public class HunspellDictionary {
    * @return List of HunspellWords that match the generated String, or {@code null} if none are found
    */
   public List<HunspellWord> lookupWord(char word[], int offset, int length) {
-    return words.get(word, offset, length);
+    return words.lookup(word, offset, length);
   }
 
   /**
@@ -115,6 +240,202 @@ public class HunspellDictionary {
     return suffixes.get(word, offset, length);
   }
 
+  /**
+   * Looks up all HunspellAffix prefixes whose append is a prefix of the String created from the given char array,
+   * offset and length, in a single left to right pass over the String.  The prefixes are added to the given list in
+   * groups sharing the same append, longest append first, as {@link #lookupPrefix(char[], int, int)} would return them
+   * for each prefix of the String.  Empty appends are included, appends as long as the String itself are not.
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @param prefixes List the groups of HunspellAffix prefixes are added to
+   */
+  public void lookupPrefixes(char word[], int offset, int length, List<List<HunspellAffix>> prefixes) {
+    int start = prefixes.size();
+
+    int state = 0;
+    for (int i = offset; i < offset + length && state >= 0; i++) {
+      // state is where the chars from offset up to i lead to
+      if (prefixAutomaton.annotationCount(state) > 0) {
+        prefixes.add(prefixGroups.get(prefixAutomaton.annotation(state, 0)));
+      }
+      state = prefixAutomaton.step(state, word[i]);
+    }
+
+    reverse(prefixes, start);
+  }
+
+  /**
+   * Looks up all HunspellAffix suffixes whose append is a suffix of the String created from the given char array,
+   * offset and length, in a single right to left pass over the String.  The suffixes are added to the given list in
+   * groups sharing the same append, longest append first, as {@link #lookupSuffix(char[], int, int)} would return them
+   * for each suffix of the String.  Appends as long as the String itself are included, empty appends are not.
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @param suffixes List the groups of HunspellAffix suffixes are added to
+   */
+  public void lookupSuffixes(char word[], int offset, int length, List<List<HunspellAffix>> suffixes) {
+    int start = suffixes.size();
+
+    int state = 0;
+    for (int i = offset + length - 1; i >= offset; i--) {
+      state = suffixAutomaton.step(state, word[i]);
+      if (state < 0) {
+        break;
+      }
+      if (suffixAutomaton.annotationCount(state) > 0) {
+        suffixes.add(suffixGroups.get(suffixAutomaton.annotation(state, 0)));
+      }
+    }
+
+    reverse(suffixes, start);
+  }
+
+  /**
+   * Builds a Bloom filter over every word of the dictionary and every form created by applying one of the affixes
+   * flagged for a word to it.  As a word can only have stems if it is one of these forms, {@link #mightHaveStems} can
+   * then reject most unknown words with a single hash computation, instead of them being looked up with every affix
+   * matching them.  Building the filter takes two passes over the words, applying all their affixes.
+   *
+   * @param falsePositiveRate Fraction of unknown words the filter should let through to be stemmed, between 0 and 1
+   */
+  public void buildFormFilter(double falsePositiveRate) {
+    final int count[] = new int[1];
+    visitForms(new FormVisitor() {
+      public void visitForm(char form[], int length) {
+        count[0]++;
+      }
+    });
+
+    final BloomFilter filter = new BloomFilter(count[0], falsePositiveRate);
+    visitForms(new FormVisitor() {
+      public void visitForm(char form[], int length) {
+        filter.add(form, 0, length);
+      }
+    });
+    formFilter = filter;
+  }
+
+  /**
+   * Checks whether the String created from the given char array, offset and length might have any stems.  Without a
+   * filter built by {@link #buildFormFilter(double)}, every String might.
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return {@code false} if the String definitely has no stems, {@code true} if it might have some
+   */
+  public boolean mightHaveStems(char word[], int offset, int length) {
+    BloomFilter filter = formFilter;
+    return filter == null || filter.mightContain(word, offset, length);
+  }
+
+  // ================================================= Getters / Setters =============================================
+
+  /**
+   * Sets the size of the cache of the stems of tokens shared by all the threads stemming with this dictionary through
+   * {@link HunspellStemmer#stem(char[], int, HunspellStemmer.StemSink)}, and so by all HunspellStemFilters using it.
+   * The cache only admits a token in place of another if it is seen more often, so rare tokens do not evict frequent
+   * ones.  Setting the size replaces any cache in use with an empty one.
+   *
+   * @param maxSize Maximum number of tokens whose stems are cached, {@code 0} to disable the cache
+   */
+  public void setStemCacheSize(int maxSize) {
+    stemCache = maxSize > 0 ? new SharedStemCache(maxSize) : null;
+  }
+
+  /**
+   * Returns the number of tokens whose stems were found in the shared stem cache
+   *
+   * @return Number of cache hits, {@code 0} if the cache is disabled
+   */
+  public long getStemCacheHits() {
+    SharedStemCache cache = stemCache;
+    return cache != null ? cache.getHits() : 0;
+  }
+
+  /**
+   * Returns the number of tokens whose stems were not found in the shared stem cache
+   *
+   * @return Number of cache misses, {@code 0} if the cache is disabled
+   */
+  public long getStemCacheMisses() {
+    SharedStemCache cache = stemCache;
+    return cache != null ? cache.getMisses() : 0;
+  }
+
+  /**
+   * Returns the cache of the stems of tokens shared by all the threads stemming with this dictionary
+   *
+   * @return SharedStemCache of the dictionary, or {@code null} if there is none
+   */
+  SharedStemCache getStemCache() {
+    return stemCache;
+  }
+
+  /**
+   * Passes every word of the dictionary and every form created by applying one of the affixes flagged for a word to it
+   * to the given FormVisitor.  These are all the forms that can have stems; a form can be passed more than once.
+   *
+   * @param visitor FormVisitor the forms are passed to
+   */
+  void visitForms(FormVisitor visitor) {
+    visitForms(visitor, 0, 1);
+  }
+
+  /**
+   * Passes the forms of a part of the words of the dictionary to the given FormVisitor, as
+   * {@link #visitForms(FormVisitor)} does for all words.  The words are split into the given number of parts by their
+   * position in the dictionary, and each part can be visited by a different thread.
+   *
+   * @param visitor FormVisitor the forms are passed to
+   * @param part Index of the part of the words whose forms are visited, from {@code 0} to {@code parts - 1}
+   * @param parts Number of parts the words are split into
+   */
+  void visitForms(FormVisitor visitor, int part, int parts) {
+    words.visit(new FormGenerator(groupByFlagId(prefixes), groupByFlagId(suffixes), visitor, part, parts));
+  }
+
+  /**
+   * Returns the store holding the words of the dictionary
+   *
+   * @return WordStore holding the words of the dictionary
+   */
+  WordStore getWordStore() {
+    return words;
+  }
+
+  /**
+   * Returns the prefixes of the dictionary, keyed by their append
+   *
+   * @return Map of appends to the prefixes defined for them
+   */
+  CharArrayMap<List<HunspellAffix>> getPrefixes() {
+    return prefixes;
+  }
+
+  /**
+   * Returns the suffixes of the dictionary, keyed by their append
+   *
+   * @return Map of appends to the suffixes defined for them
+   */
+  CharArrayMap<List<HunspellAffix>> getSuffixes() {
+    return suffixes;
+  }
+
+  /**
+   * Returns the size of the Bloom filter over the forms of the words
+   *
+   * @return Size of the filter in bytes, {@code 0} if none has been built
+   */
+  public int getFormFilterSize() {
+    BloomFilter filter = formFilter;
+    return filter != null ? filter.sizeInBytes() : 0;
+  }
+
   // ================================================= Helper Methods ================================================
 
   /**
@@ -199,6 +520,166 @@ public class HunspellDictionary {
     }
   }
 
+  /**
+   * Reverses the order of the groups of affixes added to the given list from the given index on, as the automata are
+   * walked finding the shortest appends first
+   *
+   * @param groups List of groups of affixes
+   * @param start Index of the first group to reverse
+   */
+  private static void reverse(List<List<HunspellAffix>> groups, int start) {
+    for (int i = start, j = groups.size() - 1; i < j; i++, j--) {
+      groups.set(j, groups.set(i, groups.get(j)));
+    }
+  }
+
+  /**
+   * Assigns dense IDs to the flags of the affixes, so that flag sets can be held as small bitsets and checking whether
+   * a set holds a flag is a single AND.  Flags that no affix is defined for are never checked, so they get no ID
+   */
+  private void assignFlagIds() {
+    List<HunspellAffix> affixes = new ArrayList<HunspellAffix>();
+    for (List<HunspellAffix> group : prefixes.values()) {
+      affixes.addAll(group);
+    }
+    for (List<HunspellAffix> group : suffixes.values()) {
+      affixes.addAll(group);
+    }
+
+    BitSet flags = new BitSet();
+    for (HunspellAffix affix : affixes) {
+      flags.set(affix.getFlag());
+    }
+    affixFlags = new char[flags.cardinality()];
+    for (int i = 0, flag = flags.nextSetBit(0); flag >= 0; i++, flag = flags.nextSetBit(flag + 1)) {
+      affixFlags[i] = (char) flag;
+    }
+
+    for (HunspellAffix affix : affixes) {
+      affix.setFlagId(Arrays.binarySearch(affixFlags, affix.getFlag()));
+      affix.setAppendFlagIds(getFlagIds(affix.getAppendFlags()));
+    }
+  }
+
+  /**
+   * Returns the bitset of the dense IDs of the given flags, leaving out flags that no affix is defined for
+   *
+   * @param flags Flags to get the bitset of dense IDs for
+   * @return Bitset of the dense IDs of the flags, or {@code null} if the flags are {@code null}
+   */
+  private long[] getFlagIds(char flags[]) {
+    if (flags == null) {
+      return null;
+    }
+    long flagIds[] = new long[(affixFlags.length + 63) >>> 6];
+    for (char flag : flags) {
+      int flagId = Arrays.binarySearch(affixFlags, flag);
+      if (flagId >= 0) {
+        flagIds[flagId >>> 6] |= 1L << flagId;
+      }
+    }
+    return flagIds;
+  }
+
+  /**
+   * Groups the given affixes by the dense ID of their flag
+   *
+   * @param affixes Map of appends to the affixes defined for them
+   * @return Array holding at the dense ID of each flag the affixes with that flag, or {@code null} if there are none
+   */
+  private HunspellAffix[][] groupByFlagId(CharArrayMap<List<HunspellAffix>> affixes) {
+    HunspellAffix byFlagId[][] = new HunspellAffix[affixFlags.length][];
+    for (List<HunspellAffix> group : affixes.values()) {
+      for (HunspellAffix affix : group) {
+        HunspellAffix flagGroup[] = byFlagId[affix.getFlagId()];
+        flagGroup = flagGroup == null ? new HunspellAffix[1] : Arrays.copyOf(flagGroup, flagGroup.length + 1);
+        flagGroup[flagGroup.length - 1] = affix;
+        byFlagId[affix.getFlagId()] = flagGroup;
+      }
+    }
+    return byFlagId;
+  }
+
+  /**
+   * Compiles the appends of the prefixes and the reversed appends of the suffixes into automata, so that all prefixes
+   * of a word can be found by walking it from left to right, and all suffixes by walking it from right to left
+   */
+  private void compileAffixes() {
+    prefixAutomaton = compileAffixes(prefixes, prefixGroups, false);
+    suffixAutomaton = compileAffixes(suffixes, suffixGroups, true);
+  }
+
+  /**
+   * Compiles the appends of the given affixes into an automaton, annotating each append with the index its group of
+   * affixes is added at in the given list
+   *
+   * @param affixes Map of appends to the affixes defined for them
+   * @param groups List the groups of affixes are added to
+   * @param reverse Whether the appends are to be reversed before being added to the automaton
+   * @return Automaton holding the appends of the affixes
+   */
+  private static FSM compileAffixes(CharArrayMap<List<HunspellAffix>> affixes, List<List<HunspellAffix>> groups, boolean reverse) {
+    FSMBuilder builder = FSM.builder();
+
+    CharArrayMap<List<HunspellAffix>>.EntryIterator iterator = affixes.entrySet().iterator();
+    while (iterator.hasNext()) {
+      CharSequence append = CharBuffer.wrap(iterator.nextKey());
+      builder.put(reverse ? ReverseSequence.reverse(append) : append, groups.size());
+      groups.add(iterator.currentValue());
+    }
+
+    return builder.build();
+  }
+
+  /**
+   * Reads the affixes written by {@link HunspellDictionaryCompiler} from the current position of the buffer
+   *
+   * @param buffer Buffer positioned at the start of the affixes
+   * @param conditionPattern {@link String#format(String, Object...)} pattern to be used to generate the condition regex
+   *                         pattern
+   * @return Map of appends to the affixes defined for them
+   */
+  private static CharArrayMap<List<HunspellAffix>> readAffixes(ByteBuffer buffer, String conditionPattern) {
+    CharArrayMap<List<HunspellAffix>> affixes = new CharArrayMap<List<HunspellAffix>>(Version.LUCENE_29, 8, false);
+
+    for (int i = buffer.getInt(); i > 0; i--) {
+      HunspellAffix affix = new HunspellAffix();
+      affix.setFlag(buffer.getChar());
+      affix.setStrip(new String(readChars(buffer)));
+      affix.setAppend(new String(readChars(buffer)));
+      affix.setAppendFlags(readChars(buffer));
+      String condition = new String(readChars(buffer));
+      affix.setCondition(condition, String.format(conditionPattern, condition));
+      affix.setCrossProduct(buffer.get() != 0);
+
+      List<HunspellAffix> list = affixes.get(affix.getAppend());
+      if (list == null) {
+        list = new ArrayList<HunspellAffix>();
+        affixes.put(affix.getAppend(), list);
+      }
+      list.add(affix);
+    }
+
+    return affixes;
+  }
+
+  /**
+   * Reads chars written as their number followed by the chars themselves from the current position of the buffer
+   *
+   * @param buffer Buffer positioned at the start of the chars
+   * @return Chars read from the buffer, or {@code null} if they were written as none
+   */
+  private static char[] readChars(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) {
+      return null;
+    }
+    char chars[] = new char[length];
+    buffer.asCharBuffer().get(chars);
+    buffer.position(buffer.position() + length * 2);
+    return chars;
+  }
+
   /**
    * Parses the encoding specificed in the affix file readable through the provided InputStream
    *
@@ -271,52 +752,522 @@ public class HunspellDictionary {
   }
 
   /**
-   * Reads the dictionary file through the provided InputStream, building up the words map
+   * Reads the dictionary files through the provided InputStreams one after the other
+   *
+   * @param dictionaries InputStreams for reading the hunspell dictionary files
+   * @param charset Charset of the dictionary files
+   * @return Map of the words read from the files to the HunspellWords defined for them
+   * @throws IOException Can be thrown while reading from the InputStreams
+   * @throws ParseException Can be thrown if the content of the files does not meet expected formats
+   */
+  private CharArrayMap<List<HunspellWord>> readDictionaryFiles(List<InputStream> dictionaries, Charset charset) throws IOException, ParseException {
+    // read the headers of all files first, so the words map can be sized to hold all entries
+    List<LineReader> readers = new ArrayList<LineReader>(dictionaries.size());
+    int numEntries = 0;
+    for (InputStream dictionary : dictionaries) {
+      LineReader reader = new LineReader(new InputStreamReader(dictionary, charset.newDecoder()));
+      numEntries += readNumEntries(reader);
+      readers.add(reader);
+    }
+
+    CharArrayMap<List<HunspellWord>> words = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, numEntries, false);
+    CharArrayMap<List<HunspellWord>> flagSets = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, 1024, false);
+    for (LineReader reader : readers)
+      readDictionaryFile(reader, words, flagSets);
+    return words;
+  }
+
+  /**
+   * Reads the dictionary files through the provided InputStreams on the given number of threads.  The files are split
+   * into chunks at line feeds, which is safe for all the ASCII compatible encodings used by hunspell dictionaries.  Each
+   * chunk is parsed into its own map, and the maps are merged in the order of the chunks, so the words end up with
+   * their HunspellWords in the same order as when the files are read one after the other.
+   *
+   * @param dictionaries InputStreams for reading the hunspell dictionary files
+   * @param charset Charset of the dictionary files
+   * @param threads Number of threads to parse the chunks on
+   * @return Map of the words read from the files to the HunspellWords defined for them
+   * @throws IOException Can be thrown while reading from the InputStreams
+   * @throws ParseException Can be thrown if the content of the files does not meet expected formats
+   */
+  private CharArrayMap<List<HunspellWord>> readDictionaryFiles(
+      List<InputStream> dictionaries,
+      final Charset charset,
+      int threads) throws IOException, ParseException {
+    List<byte[]> contents = new ArrayList<byte[]>(dictionaries.size());
+    long totalLength = 0;
+    for (InputStream dictionary : dictionaries) {
+      byte content[] = readFully(dictionary);
+      contents.add(content);
+      totalLength += content.length;
+    }
+    int chunkLength = (int) Math.max(totalLength / threads, 1);
+
+    List<Callable<ChunkResult>> chunks = new ArrayList<Callable<ChunkResult>>();
+    int numEntries = 0;
+    for (final byte content[] : contents) {
+      int bodyStart = 0;
+      while (bodyStart < content.length && content[bodyStart] != '\n' && content[bodyStart] != '\r') {
+        bodyStart++;
+      }
+      LineReader header = new LineReader(new InputStreamReader(new ByteArrayInputStream(content, 0, bodyStart), charset.newDecoder()));
+      int fileEntries = readNumEntries(header);
+      numEntries += fileEntries;
+
+      if (bodyStart < content.length && content[bodyStart] == '\r') {
+        bodyStart++;
+      }
+      if (bodyStart < content.length && content[bodyStart] == '\n') {
+        bodyStart++;
+      }
+
+      for (int start = bodyStart; start < content.length;) {
+        int end = Math.min(start + chunkLength, content.length);
+        while (end < content.length && content[end - 1] != '\n') {
+          end++;
+        }
+
+        final int chunkStart = start;
+        final int chunkEnd = end;
+        final int chunkEntries = (int) ((long) fileEntries * (end - start) / (content.length - bodyStart));
+        chunks.add(new Callable<ChunkResult>() {
+          public ChunkResult call() throws IOException {
+            ChunkResult result = new ChunkResult(chunkEntries);
+            LineReader reader = new LineReader(
+                new InputStreamReader(new ByteArrayInputStream(content, chunkStart, chunkEnd - chunkStart), charset.newDecoder()));
+            readDictionaryFile(reader, result.words, result.flagSets);
+            return result;
+          }
+        });
+        start = end;
+      }
+    }
+
+    CharArrayMap<List<HunspellWord>> words = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, numEntries, false);
+    CharArrayMap<List<HunspellWord>> flagSets = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, 1024, false);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<ChunkResult> future : executor.invokeAll(chunks)) {
+        mergeWords(words, flagSets, getChunkResult(future).words);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading dictionary files");
+    } finally {
+      executor.shutdown();
+    }
+    return words;
+  }
+
+  /**
+   * Retrieves the result of a chunk parsed on another thread, rethrowing any exception thrown while parsing it
+   *
+   * @param future Future holding the result of the chunk
+   * @return Result of the chunk
+   * @throws IOException Can be thrown while reading the chunk
+   * @throws InterruptedException Thrown if the current thread was interrupted while waiting for the result
+   */
+  private static ChunkResult getChunkResult(Future<ChunkResult> future) throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Merges the words of a chunk into the given words map, sharing the HunspellWords of the chunk through the given
+   * flag sets
+   *
+   * @param words Map the words of the chunk are merged into
+   * @param flagSets Map of sorted flags to the shared singleton list holding the HunspellWord for those flags
+   * @param chunkWords Map of the words read from the chunk
+   */
+  private static void mergeWords(
+      CharArrayMap<List<HunspellWord>> words,
+      CharArrayMap<List<HunspellWord>> flagSets,
+      CharArrayMap<List<HunspellWord>> chunkWords) {
+    CharArrayMap<List<HunspellWord>>.EntryIterator iterator = chunkWords.entrySet().iterator();
+    while (iterator.hasNext()) {
+      char entry[] = iterator.nextKey();
+      List<HunspellWord> wordForms = iterator.currentValue();
+
+      if (wordForms.size() == 1 && !words.containsKey(entry, 0, entry.length)) {
+        words.put(entry, internFlagSet(flagSets, wordForms.get(0)));
+      } else {
+        for (HunspellWord wordForm : wordForms) {
+          addWordForm(words, entry, entry.length, internFlagSet(flagSets, wordForm));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the shared singleton list holding the HunspellWord with the same flags as the given HunspellWord, adding
+   * the HunspellWord to the flag sets if there is none yet
    *
-   * @param dictionary InputStream to read the dictionary file through
-   * @param decoder CharsetDecoder used to decode the contents of the file
+   * @param flagSets Map of sorted flags to the shared singleton list holding the HunspellWord for those flags
+   * @param wordForm HunspellWord to find the shared singleton list for
+   * @return Shared singleton list holding the HunspellWord with the same flags
+   */
+  private static List<HunspellWord> internFlagSet(CharArrayMap<List<HunspellWord>> flagSets, HunspellWord wordForm) {
+    char flags[] = wordForm.getFlags();
+    if (flags == null) {
+      return NOFLAGS_LIST;
+    }
+
+    List<HunspellWord> wordForms = flagSets.get(flags, 0, flags.length);
+    if (wordForms == null) {
+      wordForms = Collections.singletonList(wordForm);
+      flagSets.put(flags, wordForms);
+    }
+    return wordForms;
+  }
+
+  /**
+   * Reads the remaining content of the given InputStream
+   *
+   * @param stream InputStream to read
+   * @return Content read from the InputStream
+   * @throws IOException Can be thrown while reading from the InputStream
+   */
+  private static byte[] readFully(InputStream stream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte buffer[] = new byte[8192];
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Reads the number of entries from the first line of a dictionary file
+   *
+   * @param reader LineReader positioned at the start of the dictionary file
+   * @return Number of entries declared by the dictionary file
    * @throws IOException Can be thrown while reading from the file
+   * @throws ParseException Thrown if the first line of the file is not a number
    */
-  private void readDictionaryFile(InputStream dictionary, CharsetDecoder decoder) throws IOException {
-    BufferedReader reader = new BufferedReader(new InputStreamReader(dictionary, decoder));
-    // nocommit, don't create millions of strings.
-    String line = reader.readLine(); // first line is number of entries
-    int numEntries = Integer.parseInt(line);
-    
-    // nocommit, the flags themselves can be double-chars (long) or also numeric
-    // either way the trick is to encode them as char... but they must be parsed differently
-    while ((line = reader.readLine()) != null) {
-      String entry;
-      HunspellWord wordForm;
-      
-      int flagSep = line.lastIndexOf('/');
+  private int readNumEntries(LineReader reader) throws IOException, ParseException {
+    if (!reader.readLine()) {
+      throw new ParseException("Unexpected end of dictionary file.", 0);
+    }
+    String line = new String(reader.line, 0, reader.length).trim();
+    try {
+      return Integer.parseInt(line);
+    } catch (NumberFormatException e) {
+      throw new ParseException("The first line in the dictionary file must be the number of entries, was: '" + line + "'", 0);
+    }
+  }
+
+  /**
+   * Reads the entries of the dictionary file through the provided LineReader, building up the words map.  Each line is
+   * parsed in place in the reader's buffer, so only the chars of new words and new flag sets are copied.
+   *
+   * @param reader LineReader positioned after the first line of the dictionary file
+   * @param words Map the words read from the file are added to
+   * @param flagSets Map of sorted flags to the shared singleton list holding the HunspellWord for those flags, so that
+   *                 words with identical flags share the same HunspellWord
+   * @throws IOException Can be thrown while reading from the file
+   */
+  private void readDictionaryFile(
+      LineReader reader,
+      CharArrayMap<List<HunspellWord>> words,
+      CharArrayMap<List<HunspellWord>> flagSets) throws IOException {
+    char flags[] = new char[16];
+
+    while (reader.readLine()) {
+      char line[] = reader.line;
+
+      // morphological fields follow the word and its flags, separated by a tab
+      int end = 0;
+      while (end < reader.length && line[end] != '\t') {
+        end++;
+      }
+
+      int flagSep = end - 1;
+      while (flagSep >= 0 && line[flagSep] != '/') {
+        flagSep--;
+      }
+
+      List<HunspellWord> wordForms;
+      int entryLength;
       if (flagSep == -1) {
-        wordForm = NOFLAGS;
-        entry = line;
+        wordForms = NOFLAGS_LIST;
+        entryLength = end;
       } else {
-        // note, there can be comments (morph description) after a flag.
-        // we should really look for any whitespace
-        int end = line.indexOf('\t', flagSep);
-        if (end == -1)
-          end = line.length();
-        
-        
-        wordForm = new HunspellWord(flagParsingStrategy.parseFlags(line.substring(flagSep + 1, end)));
-        Arrays.sort(wordForm.getFlags());
-        entry = line.substring(0, flagSep);
-      }
-      
-      List<HunspellWord> entries = words.get(entry);
-      if (entries == null) {
-        entries = new ArrayList<HunspellWord>();
-        words.put(entry, entries);
+        int rawLength = end - flagSep - 1;
+        if (flags.length < rawLength) {
+          flags = new char[ArrayUtil.getNextSize(rawLength)];
+        }
+
+        int numFlags = flagParsingStrategy.parseFlags(line, flagSep + 1, rawLength, flags);
+        Arrays.sort(flags, 0, numFlags);
+        wordForms = flagSets.get(flags, 0, numFlags);
+        if (wordForms == null) {
+          char wordFlags[] = Arrays.copyOf(flags, numFlags);
+          wordForms = Collections.singletonList(new HunspellWord(wordFlags, getFlagIds(wordFlags)));
+          flagSets.put(wordFlags, wordForms);
+        }
+        entryLength = flagSep;
       }
-      entries.add(wordForm);
+
+      addWordForm(words, line, entryLength, wordForms);
+    }
+  }
+
+  /**
+   * Adds the HunspellWord held in the given shared singleton list to the HunspellWords of the given word.  Most words
+   * have only one HunspellWord, so they simply refer to the shared list; a private list is only created for words
+   * that appear more than once.
+   *
+   * @param words Map the word is added to
+   * @param entry Char array holding the word at its start
+   * @param length Length of the word
+   * @param wordForms Shared singleton list holding the HunspellWord
+   */
+  private static void addWordForm(CharArrayMap<List<HunspellWord>> words, char entry[], int length, List<HunspellWord> wordForms) {
+    List<HunspellWord> entries = words.get(entry, 0, length);
+    if (entries == null) {
+      words.put(Arrays.copyOf(entry, length), wordForms);
+    } else if (entries.size() == 1) {
+      List<HunspellWord> list = new ArrayList<HunspellWord>(2);
+      list.add(entries.get(0));
+      list.add(wordForms.get(0));
+      words.put(Arrays.copyOf(entry, length), list);
+    } else {
+      entries.add(wordForms.get(0));
     }
   }
 
   // ================================================= Inner Classes =================================================
 
+  /**
+   * WordStore.Visitor creating every form of the visited words that an affix flagged for them produces, which are
+   * exactly the forms that {@link HunspellStemmer} can strip an affix from and find a word.  The words and their forms
+   * are passed to a FormVisitor
+   */
+  private static class FormGenerator implements WordStore.Visitor {
+
+    private final HunspellAffix prefixes[][];
+    private final HunspellAffix suffixes[][];
+    private final FormVisitor visitor;
+    private final int part;
+    private final int parts;
+    private char form[] = new char[32];
+    private int position;
+
+    /**
+     * Creates a new FormGenerator applying the given affixes
+     *
+     * @param prefixes Prefixes grouped by the dense ID of their flag
+     * @param suffixes Suffixes grouped by the dense ID of their flag
+     * @param visitor FormVisitor the words and their forms are passed to
+     * @param part Index of the part of the words whose forms are created
+     * @param parts Number of parts the words are split into, word {@code i} being in part {@code i % parts}
+     */
+    FormGenerator(HunspellAffix prefixes[][], HunspellAffix suffixes[][], FormVisitor visitor, int part, int parts) {
+      this.prefixes = prefixes;
+      this.suffixes = suffixes;
+      this.visitor = visitor;
+      this.part = part;
+      this.parts = parts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void visit(char word[], int offset, int length, List<HunspellWord> wordForms) {
+      if (position++ % parts != part) {
+        return;
+      }
+      if (length > form.length) {
+        form = new char[ArrayUtil.getNextSize(length)];
+      }
+      System.arraycopy(word, offset, form, 0, length);
+      visitor.visitForm(form, length);
+
+      for (HunspellWord wordForm : wordForms) {
+        long flagIds[] = wordForm.getFlagIds();
+        if (flagIds == null) {
+          continue;
+        }
+        for (int i = 0; i < flagIds.length; i++) {
+          for (long bits = flagIds[i]; bits != 0; bits &= bits - 1) {
+            int flagId = (i << 6) + Long.numberOfTrailingZeros(bits);
+            applyAffixes(word, offset, length, prefixes[flagId], true);
+            applyAffixes(word, offset, length, suffixes[flagId], false);
+          }
+        }
+      }
+    }
+
+    /**
+     * Creates the forms the given affixes produce from the given word, for the affixes whose strip and condition match
+     *
+     * @param word Char array holding the word
+     * @param offset Offset in the char array that the word starts at
+     * @param length Length from the offset that the word is
+     * @param affixes Affixes to apply, can be {@code null}
+     * @param prefix Whether the affixes are prefixes, rather than suffixes
+     */
+    private void applyAffixes(char word[], int offset, int length, HunspellAffix affixes[], boolean prefix) {
+      if (affixes == null) {
+        return;
+      }
+      for (HunspellAffix affix : affixes) {
+        String strip = affix.getStrip();
+        String append = affix.getAppend();
+        int stripStart = prefix ? offset : offset + length - strip.length();
+        if (strip.length() > length || !regionMatches(word, stripStart, strip) ||
+            !affix.checkCondition(word, offset, length)) {
+          continue;
+        }
+
+        int formLength = length - strip.length() + append.length();
+        if (formLength > form.length) {
+          form = new char[ArrayUtil.getNextSize(formLength)];
+        }
+        if (prefix) {
+          append.getChars(0, append.length(), form, 0);
+          System.arraycopy(word, offset + strip.length(), form, append.length(), length - strip.length());
+        } else {
+          System.arraycopy(word, offset, form, 0, length - strip.length());
+          append.getChars(0, append.length(), form, length - strip.length());
+        }
+        visitor.visitForm(form, formLength);
+      }
+    }
+
+    /**
+     * Checks whether the given char array holds the given String at the given offset
+     *
+     * @param chars Char array to check
+     * @param offset Offset in the char array to check from
+     * @param string String to check for
+     * @return {@code true} if the chars from the offset equal the String, {@code false} otherwise
+     */
+    private static boolean regionMatches(char chars[], int offset, String string) {
+      for (int i = 0; i < string.length(); i++) {
+        if (chars[offset + i] != string.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Receives the forms of the words of a dictionary from {@link HunspellDictionary#visitForms(FormVisitor)}
+   */
+  interface FormVisitor {
+
+    /**
+     * Visits a form.  The char array is reused for the next form, so it must not be kept
+     *
+     * @param form Char array holding the form, starting at index 0
+     * @param length Length of the form
+     */
+    void visitForm(char form[], int length);
+  }
+
+  /**
+   * Words and flag sets read from a chunk of a dictionary file
+   */
+  private static class ChunkResult {
+
+    final CharArrayMap<List<HunspellWord>> words;
+    final CharArrayMap<List<HunspellWord>> flagSets = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, 1024, false);
+
+    /**
+     * Creates a new, empty ChunkResult
+     *
+     * @param numEntries Expected number of entries in the chunk
+     */
+    ChunkResult(int numEntries) {
+      words = new CharArrayMap<List<HunspellWord>>(Version.LUCENE_29, numEntries, false);
+    }
+  }
+
+  /**
+   * Reads the lines of a dictionary file into a reusable char buffer, rather than creating a String for every line
+   */
+  private static class LineReader {
+
+    private final Reader reader;
+    private final char buffer[] = new char[8192];
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+
+    /** Chars of the last line read, without its line terminator */
+    char line[] = new char[64];
+    /** Number of chars of the last line read */
+    int length;
+
+    /**
+     * Creates a new LineReader reading from the given Reader
+     *
+     * @param reader Reader to read the lines from
+     */
+    LineReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * Reads the next line into {@link #line}.  Lines can be terminated by '\n', '\r' or '\r\n'.
+     *
+     * @return {@code true} if a line was read, {@code false} if the end of the file has been reached
+     * @throws IOException Can be thrown while reading from the Reader
+     */
+    boolean readLine() throws IOException {
+      length = 0;
+      boolean read = false;
+
+      for (;;) {
+        if (position == limit) {
+          limit = reader.read(buffer, 0, buffer.length);
+          position = 0;
+          if (limit <= 0) {
+            limit = 0;
+            return read;
+          }
+        }
+
+        char c = buffer[position++];
+        if (skipLineFeed) {
+          skipLineFeed = false;
+          if (c == '\n') {
+            continue;
+          }
+        }
+        read = true;
+
+        if (c == '\n') {
+          return true;
+        } else if (c == '\r') {
+          skipLineFeed = true;
+          return true;
+        }
+
+        if (length == line.length) {
+          line = Arrays.copyOf(line, ArrayUtil.getNextSize(length + 1));
+        }
+        line[length++] = c;
+      }
+    }
+  }
+
   /**
    * Abstraction of the process of parsing flags taken from the affix and dic files
    */
@@ -338,7 +1289,22 @@ public class HunspellDictionary {
      * @param rawFlags String to parse into flags
      * @return Parsed flags
      */
-    abstract char[] parseFlags(String rawFlags);
+    char[] parseFlags(String rawFlags) {
+      char raw[] = rawFlags.toCharArray();
+      char flags[] = new char[raw.length];
+      return Arrays.copyOf(flags, parseFlags(raw, 0, raw.length, flags));
+    }
+
+    /**
+     * Parses the String created from the given char array, offset and length into multiple flags
+     *
+     * @param rawFlags Char array holding the String to parse into flags
+     * @param offset Offset in the char array that the String starts at
+     * @param length Length from the offset that the String is
+     * @param flags Array the parsed flags are written to, must be at least as long as the String
+     * @return Number of parsed flags
+     */
+    abstract int parseFlags(char rawFlags[], int offset, int length, char flags[]);
   }
 
   /**
@@ -349,8 +1315,9 @@ public class HunspellDictionary {
     /**
      * {@inheritDoc}
      */
-    public char[] parseFlags(String rawFlags) {
-      return rawFlags.toCharArray();
+    public int parseFlags(char rawFlags[], int offset, int length, char flags[]) {
+      System.arraycopy(rawFlags, offset, flags, 0, length);
+      return length;
     }
   }
 
@@ -362,22 +1329,38 @@ public class HunspellDictionary {
     /**
      * {@inheritDoc}
      */
-    public char[] parseFlags(String rawFlags) {
-      String[] rawFlagParts = rawFlags.trim().split(",");
-      char[] flags = new char[rawFlagParts.length];
+    public int parseFlags(char rawFlags[], int offset, int length, char flags[]) {
+      int numFlags = 0;
+      int end = offset + length;
 
-      for (int i = 0; i < rawFlagParts.length; i++) {
-        // note, removing the trailing X/leading I for nepali... what is the rule here?! 
-        flags[i] = (char) Integer.parseInt(rawFlagParts[i].replaceAll("[^0-9]", ""));
+      while (offset < end) {
+        int flag = 0;
+        boolean digits = false;
+        // note, skipping the trailing X/leading I for nepali... what is the rule here?!
+        for (; offset < end && rawFlags[offset] != ','; offset++) {
+          char c = rawFlags[offset];
+          if (c >= '0' && c <= '9') {
+            flag = flag * 10 + (c - '0');
+            digits = true;
+          }
+        }
+        offset++; // skip the comma
+
+        if (digits) {
+          flags[numFlags++] = (char) flag;
+        } else if (offset < end) {
+          throw new NumberFormatException("Empty flag in: " + new String(rawFlags, end - length, length));
+        }
       }
 
-      return flags;
+      return numFlags;
     }
   }
 
   /**
    * Implementation of {@link FlagParsingStrategy} that assumes each flag is encoded as two ASCII characters whose codes
-   * must be combined into a single character.
+   * must be combined into a single character.  As in hunspell itself, the first character is taken as the high byte,
+   * so that distinct flags such as 'Ab' and 'Ba' are not combined into the same character.
    *
    * TODO (rmuir) test
    */
@@ -386,20 +1369,12 @@ public class HunspellDictionary {
     /**
      * {@inheritDoc}
      */
-    public char[] parseFlags(String rawFlags) {
-      if (rawFlags.length() == 0) {
-        return new char[0];
+    public int parseFlags(char rawFlags[], int offset, int length, char flags[]) {
+      int numFlags = 0;
+      for (int i = offset; i + 1 < offset + length; i += 2) {
+        flags[numFlags++] = (char) ((rawFlags[i] << 8) + rawFlags[i + 1]);
       }
-
-      StringBuilder builder = new StringBuilder();
-      for (int i = 0; i < rawFlags.length(); i+=2) {
-        char cookedFlag = (char) ((int) rawFlags.charAt(i) + (int) rawFlags.charAt(i + 1));
-        builder.append(cookedFlag);
-      }
-      
-      char flags[] = new char[builder.length()];
-      builder.getChars(0, builder.length(), flags, 0);
-      return flags;
+      return numFlags;
     }
   }
 }
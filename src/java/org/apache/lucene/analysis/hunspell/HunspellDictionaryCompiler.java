@@ -0,0 +1,255 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HunspellDictionaryCompiler turns a hunspell affix file and its dictionary files into a single binary file, which
+ * can be opened with {@link HunspellDictionary#open(File)} without parsing any text.  The file holds the following
+ * sections, all written big endian:
+ *
+ * <pre>
+ *   header      int magic, int version
+ *   prefixes    int count, affix*
+ *   suffixes    int count, affix*
+ *   flag sets   int count, (int length or -1 for none, char*)*
+ *   word lists  int count, (int length, int flag set ID*)*
+ *   words       word table as read by MappedWordStore
+ *
+ *   affix       char flag, string strip, string append, (int length or -1 for none, char*) append flags,
+ *               string condition, byte cross product
+ *   string      int length, char*
+ * </pre>
+ */
+public class HunspellDictionaryCompiler {
+
+  static final int MAGIC = 0x48554E53; // "HUNS"
+  static final int VERSION = 2;
+
+  /**
+   * Compiles the hunspell affix and dictionary files read through the provided InputStreams into the given file
+   *
+   * @param affix InputStream for reading the hunspell affix file
+   * @param dictionaries InputStreams for reading the hunspell dictionary files
+   * @param output File the compiled dictionary is written to
+   * @throws IOException Can be thrown while reading from the InputStreams or writing the file
+   * @throws ParseException Can be thrown if the content of the files does not meet expected formats
+   */
+  public static void compile(InputStream affix, List<InputStream> dictionaries, File output) throws IOException, ParseException {
+    HunspellDictionary dictionary = new HunspellDictionary(affix, dictionaries);
+    WordTable words = (WordTable) dictionary.getWordStore();
+    List<List<HunspellWord>> wordLists = words.getWordLists();
+
+    Map<HunspellWord, Integer> flagSetIds = new HashMap<HunspellWord, Integer>();
+    List<HunspellWord> flagSets = new ArrayList<HunspellWord>();
+    for (List<HunspellWord> wordList : wordLists) {
+      for (HunspellWord word : wordList) {
+        if (!flagSetIds.containsKey(word)) {
+          flagSetIds.put(word, flagSets.size());
+          flagSets.add(word);
+        }
+      }
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+
+      // the affixes come first, as the flags of the flag sets are mapped to the IDs the affix flags are given
+      writeAffixes(out, dictionary.getPrefixes());
+      writeAffixes(out, dictionary.getSuffixes());
+
+      out.writeInt(flagSets.size());
+      for (HunspellWord flagSet : flagSets) {
+        writeChars(out, flagSet.getFlags());
+      }
+
+      out.writeInt(wordLists.size());
+      for (List<HunspellWord> wordList : wordLists) {
+        out.writeInt(wordList.size());
+        for (HunspellWord word : wordList) {
+          out.writeInt(flagSetIds.get(word));
+        }
+      }
+
+      writeWords(out, words);
+    } finally {
+      out.close();
+    }
+  }
+
+  // ================================================= Helper Methods ================================================
+
+  /**
+   * Writes the affixes held in the given map
+   *
+   * @param out DataOutputStream to write the affixes to
+   * @param affixes Map of appends to the affixes defined for them
+   * @throws IOException Can be thrown while writing the affixes
+   */
+  private static void writeAffixes(DataOutputStream out, CharArrayMap<List<HunspellAffix>> affixes) throws IOException {
+    int count = 0;
+    for (List<HunspellAffix> list : affixes.values()) {
+      count += list.size();
+    }
+
+    out.writeInt(count);
+    for (List<HunspellAffix> list : affixes.values()) {
+      for (HunspellAffix affix : list) {
+        out.writeChar(affix.getFlag());
+        writeString(out, affix.getStrip());
+        writeString(out, affix.getAppend());
+        writeChars(out, affix.getAppendFlags());
+        writeString(out, affix.getCondition());
+        out.writeBoolean(affix.isCrossProduct());
+      }
+    }
+  }
+
+  /**
+   * Writes the word table, an open addressing hash table filled to at most half of its slots, followed by the entries
+   * its slots point at
+   *
+   * @param out DataOutputStream to write the table to
+   * @param words WordTable holding the words, whose word list IDs are written
+   * @throws IOException Can be thrown while writing the table
+   */
+  private static void writeWords(DataOutputStream out, WordTable words) throws IOException {
+    int count = words.size();
+    char keys[][] = new char[count][];
+    int ids[] = new int[count];
+    for (int i = 0; i < count; i++) {
+      keys[i] = words.getWord(i);
+      ids[i] = words.getWordListId(i);
+    }
+
+    int slotCount = 2;
+    while (slotCount < count * 2) {
+      slotCount <<= 1;
+    }
+
+    int positions[] = new int[count];
+    int position = 4 + slotCount * 4;
+    for (int i = 0; i < count; i++) {
+      positions[i] = position;
+      position += 12 + keys[i].length * 2;
+    }
+
+    int slots[] = new int[slotCount];
+    Arrays.fill(slots, -1);
+    for (int i = 0; i < count; i++) {
+      int hash = MappedWordStore.hash(keys[i], 0, keys[i].length);
+      int slot = hash & (slotCount - 1);
+      int increment = MappedWordStore.probeIncrement(hash);
+      while (slots[slot] != -1) {
+        slot = (slot + increment) & (slotCount - 1);
+      }
+      slots[slot] = positions[i];
+    }
+
+    out.writeInt(slotCount);
+    for (int slot : slots) {
+      out.writeInt(slot);
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeInt(MappedWordStore.hash(keys[i], 0, keys[i].length));
+      out.writeInt(ids[i]);
+      out.writeInt(keys[i].length);
+      for (char c : keys[i]) {
+        out.writeChar(c);
+      }
+    }
+  }
+
+  /**
+   * Writes the given String as its length followed by its chars
+   *
+   * @param out DataOutputStream to write the String to
+   * @param string String to write
+   * @throws IOException Can be thrown while writing the String
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    out.writeInt(string.length());
+    out.writeChars(string);
+  }
+
+  /**
+   * Writes the given chars as their number followed by the chars themselves, or -1 if there are none
+   *
+   * @param out DataOutputStream to write the chars to
+   * @param chars Chars to write.  Can be {@code null}
+   * @throws IOException Can be thrown while writing the chars
+   */
+  private static void writeChars(DataOutputStream out, char chars[]) throws IOException {
+    if (chars == null) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(chars.length);
+    for (char c : chars) {
+      out.writeChar(c);
+    }
+  }
+
+  // ================================================= Entry Point ===================================================
+
+  /**
+   * HunspellDictionaryCompiler entry point.  Accepts three arguments: location of affix file, comma separated
+   * locations of dic files and location of the compiled file
+   *
+   * @param args Program arguments.  Should contain location of affix file, locations of dic files and location of
+   *             the compiled file
+   * @throws IOException Can be thrown while reading from or writing to the files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  public static void main(String[] args) throws IOException, ParseException {
+    if (args.length != 3) {
+      System.out.println("usage: HunspellDictionaryCompiler <affix location> <dic location>[,<dic location>...] <output location>");
+      System.exit(1);
+    }
+
+    InputStream affixInputStream = new FileInputStream(args[0]);
+    List<InputStream> dicInputStreams = new ArrayList<InputStream>();
+    for (String dic : args[1].split(",")) {
+      dicInputStreams.add(new FileInputStream(dic));
+    }
+
+    try {
+      compile(affixInputStream, dicInputStreams, new File(args[2]));
+    } finally {
+      affixInputStream.close();
+      for (InputStream dicInputStream : dicInputStreams) {
+        dicInputStream.close();
+      }
+    }
+  }
+}
@@ -18,13 +18,14 @@ package org.apache.lucene.analysis.hunspell;
  */
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Arrays;
 
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.hunspell.HunspellStemmer.Stem;
+import org.apache.lucene.analysis.hunspell.HunspellStemmer.StemSink;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.util.ArrayUtil;
 
 /**
  * TokenFilter that uses hunspell affix rules and words to stem tokens.  Since hunspell supports a word having multiple
@@ -38,10 +39,11 @@ public final class HunspellStemFilter extends TokenFilter {
     (PositionIncrementAttribute) addAttribute(PositionIncrementAttribute.class);
   private final HunspellStemmer stemmer;
   
-  private List<Stem> buffer;
+  private final StemBuffer buffer = new StemBuffer();
   private State savedState;
   
   private final boolean dedup;
+  private final StemCache cache;
 
   /**
    * Creates a new HunspellStemFilter that will stem tokens from the given TokenStream using affix rules in the provided
@@ -63,9 +65,36 @@ public final class HunspellStemFilter extends TokenFilter {
    * @param dedup true if only unique terms should be output.
    */
   public HunspellStemFilter(TokenStream input, HunspellDictionary dictionary, boolean dedup) {
+    this(input, new HunspellStemmer(dictionary), dedup);
+  }
+
+  /**
+   * Creates a new HunspellStemFilter that will stem tokens from the given TokenStream using the provided
+   * HunspellStemmer.  As HunspellStemmer is thread safe, a single stemmer can be shared by all the filters using the
+   * same dictionary
+   *
+   * @param input TokenStream whose tokens will be stemmed
+   * @param stemmer HunspellStemmer that will be used to stem the tokens
+   * @param dedup true if only unique terms should be output.
+   */
+  public HunspellStemFilter(TokenStream input, HunspellStemmer stemmer, boolean dedup) {
+    this(input, stemmer, dedup, 0);
+  }
+
+  /**
+   * Creates a new HunspellStemFilter that will stem tokens from the given TokenStream using the provided
+   * HunspellStemmer, caching the stems of the most recently seen tokens
+   *
+   * @param input TokenStream whose tokens will be stemmed
+   * @param stemmer HunspellStemmer that will be used to stem the tokens
+   * @param dedup true if only unique terms should be output.
+   * @param cacheSize Maximum number of tokens whose stems are cached, {@code 0} to disable caching
+   */
+  public HunspellStemFilter(TokenStream input, HunspellStemmer stemmer, boolean dedup, int cacheSize) {
     super(input);
     this.dedup = dedup;
-    this.stemmer = new HunspellStemmer(dictionary);
+    this.stemmer = stemmer;
+    this.cache = cacheSize > 0 ? new StemCache(cacheSize) : null;
   }
 
   /**
@@ -73,11 +102,11 @@ public final class HunspellStemFilter extends TokenFilter {
    */
   @Override
   public boolean incrementToken() throws IOException {
-    if (buffer != null && !buffer.isEmpty()) {
-      Stem nextStem = buffer.remove(0);
+    if (buffer.next < buffer.count) {
       restoreState(savedState);
       posIncAtt.setPositionIncrement(0);
-      termAtt.setTermBuffer(nextStem.getStem(), 0, nextStem.getStemLength());
+      termAtt.setTermBuffer(buffer.chars, buffer.offsets[buffer.next], buffer.lengths[buffer.next]);
+      buffer.next++;
       return true;
     }
     
@@ -85,28 +114,161 @@ public final class HunspellStemFilter extends TokenFilter {
       return false;
     }
     
-    buffer = dedup ? stemmer.uniqueStems(termAtt.termBuffer(), termAtt.termLength()) : stemmer.stem(termAtt.termBuffer(), termAtt.termLength());
+    buffer.clear();
+    if (!stemmer.mightHaveStems(termAtt.termBuffer(), termAtt.termLength())) { // unknown word, return it unchanged
+      return true;
+    }
 
-    if (buffer.isEmpty()) { // we do not know this word, return it unchanged
+    char stems[][] = cache != null ? cache.get(termAtt.termBuffer(), termAtt.termLength()) : null;
+    if (stems != null) {
+      for (char stem[] : stems) {
+        buffer.append(stem, stem.length);
+      }
+    } else {
+      stemmer.stem(termAtt.termBuffer(), termAtt.termLength(), buffer);
+      if (cache != null) {
+        cache.put(termAtt.termBuffer(), termAtt.termLength(), buffer.toArray());
+      }
+    }
+
+    if (buffer.count == 0) { // we do not know this word, return it unchanged
       return true;
     }     
 
-    Stem stem = buffer.remove(0);
-    termAtt.setTermBuffer(stem.getStem(), 0, stem.getStemLength());
+    termAtt.setTermBuffer(buffer.chars, buffer.offsets[0], buffer.lengths[0]);
+    buffer.next = 1;
 
-    if (!buffer.isEmpty()) {
+    if (buffer.count > 1) {
       savedState = captureState();
     }
 
     return true;
   }
 
+  /**
+   * Returns the number of tokens whose stems were found in the cache
+   *
+   * @return Number of cache hits, {@code 0} if caching is disabled
+   */
+  public long getCacheHits() {
+    return cache != null ? cache.getHits() : 0;
+  }
+
+  /**
+   * Returns the number of tokens whose stems were not found in the cache, and so were stemmed
+   *
+   * @return Number of cache misses, {@code 0} if caching is disabled
+   */
+  public long getCacheMisses() {
+    return cache != null ? cache.getMisses() : 0;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public void reset() throws IOException {
     super.reset();
-    buffer = null;
+    buffer.clear();
+  }
+
+  // ================================================= Inner Classes =================================================
+
+  /**
+   * StemSink that copies the stems of the current token into reusable arrays, so that they can be emitted one at a
+   * time.  If only unique terms are to be output, stems equal to an earlier stem of the token are dropped
+   */
+  private final class StemBuffer implements StemSink {
+
+    private char chars[] = new char[64];
+    private int offsets[] = new int[4];
+    private int lengths[] = new int[4];
+    private int count;
+    private int next;
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addStem(char stem[], int length) {
+      if (!dedup || !contains(stem, length)) {
+        append(stem, length);
+      }
+    }
+
+    /**
+     * Adds the given stem to the buffer
+     *
+     * @param stem Char array holding the stem
+     * @param length Length of the stem
+     */
+    void append(char stem[], int length) {
+      int offset = count == 0 ? 0 : offsets[count - 1] + lengths[count - 1];
+      if (chars.length < offset + length) {
+        chars = Arrays.copyOf(chars, ArrayUtil.getNextSize(offset + length));
+      }
+      if (offsets.length == count) {
+        offsets = ArrayUtil.grow(offsets, count + 1);
+        lengths = ArrayUtil.grow(lengths, count + 1);
+      }
+
+      System.arraycopy(stem, 0, chars, offset, length);
+      offsets[count] = offset;
+      lengths[count] = length;
+      count++;
+    }
+
+    /**
+     * Copies the stems in the buffer into an array holding an array for each stem
+     *
+     * @return Stems in the buffer
+     */
+    char[][] toArray() {
+      char stems[][] = new char[count][];
+      for (int i = 0; i < count; i++) {
+        stems[i] = Arrays.copyOfRange(chars, offsets[i], offsets[i] + lengths[i]);
+      }
+      return stems;
+    }
+
+    /**
+     * Removes the stems of the previous token
+     */
+    void clear() {
+      count = 0;
+      next = 0;
+    }
+
+    /**
+     * Checks whether the given stem equals one of the stems already in the buffer
+     *
+     * @param stem Char array holding the stem
+     * @param length Length of the stem
+     * @return {@code true} if the stem is already in the buffer, {@code false} otherwise
+     */
+    private boolean contains(char stem[], int length) {
+      for (int i = 0; i < count; i++) {
+        if (lengths[i] == length && equals(offsets[i], stem, length)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Checks whether the chars in the buffer from the given offset on equal the given stem
+     *
+     * @param offset Offset in the buffer
+     * @param stem Char array holding the stem
+     * @param length Length of the stem
+     * @return {@code true} if the chars equal the stem, {@code false} otherwise
+     */
+    private boolean equals(int offset, char stem[], int length) {
+      for (int i = 0; i < length; i++) {
+        if (chars[offset + i] != stem[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 }
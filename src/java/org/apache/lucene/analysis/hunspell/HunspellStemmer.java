@@ -22,12 +22,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.Version;
 
 /**
  * HunspellStemmer uses the affix rules declared in the HunspellDictionary to generate one or more stems for a word.  It
- * conforms to the algorithm in the original hunspell algorithm, including recursive suffix stripping.
+ * conforms to the algorithm in the original hunspell algorithm, including recursive suffix stripping.  HunspellStemmer
+ * is thread safe: the buffers used while stemming are kept per thread, so a single stemmer can be shared by all the
+ * threads using a dictionary.
  * 
  * @author Chris Male
  */
@@ -35,8 +43,15 @@ public class HunspellStemmer {
 
   private static final int RECURSION_CAP = 2;
   
-  private HunspellDictionary dictionary;
-  private final StringBuilder segment = new StringBuilder();
+  private final HunspellDictionary dictionary;
+  // the scratch state of each thread stemming with this stemmer, the stemmer itself is immutable
+  private final ThreadLocal<StemContext> contexts = new ThreadLocal<StemContext>() {
+    @Override
+    protected StemContext initialValue() {
+      return new StemContext();
+    }
+  };
+  private final FullFormLexicon lexicon;
 
   /**
    * Constructs a new HunspellStemmer which will use the provided HunspellDictionary to create its stems
@@ -44,7 +59,36 @@ public class HunspellStemmer {
    * @param dictionary HunspellDictionary that will be used to create the stems
    */
   public HunspellStemmer(HunspellDictionary dictionary) {
+    this(dictionary, false);
+  }
+
+  /**
+   * Constructs a new HunspellStemmer which will use the provided HunspellDictionary to create its stems, optionally
+   * expanding it into a full form lexicon first.  The lexicon maps every word of the dictionary and every form an affix
+   * flagged for a word produces to its stems, so that {@link #stem(char[], int, StemSink)} answers with a single
+   * lookup instead of stripping affixes.  Building it stems every such form once, so it takes far longer than loading
+   * the dictionary and needs more memory.  The methods returning lists of Stems still strip affixes, as they report
+   * the affixes that were stripped.
+   *
+   * @param dictionary HunspellDictionary that will be used to create the stems
+   * @param lexicon Whether to build a full form lexicon that the stems are looked up in
+   */
+  public HunspellStemmer(HunspellDictionary dictionary, boolean lexicon) {
+    this(dictionary, lexicon, 1);
+  }
+
+  /**
+   * Constructs a new HunspellStemmer which will use the provided HunspellDictionary to create its stems, optionally
+   * expanding it into a full form lexicon first as {@link #HunspellStemmer(HunspellDictionary, boolean)} does.
+   *
+   * @param dictionary HunspellDictionary that will be used to create the stems
+   * @param lexicon Whether to build a full form lexicon that the stems are looked up in
+   * @param threads Number of threads used to build the lexicon.  With more than one thread, the words are split into
+   *                parts whose forms are stemmed and sorted in parallel, and then merged
+   */
+  public HunspellStemmer(HunspellDictionary dictionary, boolean lexicon, int threads) {
     this.dictionary = dictionary;
+    this.lexicon = lexicon ? buildLexicon(threads) : null;
   }
 
   /**
@@ -64,11 +108,9 @@ public class HunspellStemmer {
    * @return List of stems for the word
    */
   public List<Stem> stem(char word[], int length) {
+    StemContext context = contexts.get();
     List<Stem> stems = new ArrayList<Stem>();
-    if (dictionary.lookupWord(word, 0, length) != null) {
-      stems.add(new Stem(word, length));
-    }
-    stems.addAll(stem(word, length, null, 0));
+    stem(word, length, new StemListBuilder(stems, false, context), context);
     return stems;
   }
   
@@ -79,135 +121,447 @@ public class HunspellStemmer {
    * @return List of stems for the word
    */
   public List<Stem> uniqueStems(char word[], int length) {
+    StemContext context = contexts.get();
     List<Stem> stems = new ArrayList<Stem>();
-    CharArraySet terms = new CharArraySet(Version.LUCENE_29, 8, false);
-    if (dictionary.lookupWord(word, 0, length) != null) {
-      stems.add(new Stem(word, length));
-      terms.add(word);
-    }
-    List<Stem> otherStems = stem(word, length, null, 0);
-    for (int i = 0; i < otherStems.size(); i++) {
-      Stem s = otherStems.get(i);
-      if (!terms.contains(s.stem)) {
-        stems.add(s);
-        terms.add(s.stem);
+    stem(word, length, new StemListBuilder(stems, true, context), context);
+    return stems;
+  }
+
+  /**
+   * Find the stem(s) of the provided word, passing them to the given StemSink in the same order as
+   * {@link #stem(char[], int)} returns them.  The stems are built in buffers that are reused for every word, so once
+   * the buffers have grown to fit the longest stems, no objects are allocated while stemming.  If the dictionary has a
+   * stem cache ({@link HunspellDictionary#setStemCacheSize(int)}), the stems are looked up in and added to it.  If it
+   * has a form filter ({@link HunspellDictionary#buildFormFilter(double)}), words it rejects are not stemmed at all.
+   * If the stemmer has a full form lexicon, the stems are looked up in it instead.
+   *
+   * @param word Word to find the stems for
+   * @param length Length of the word
+   * @param sink StemSink the stems are passed to
+   */
+  public void stem(char word[], int length, StemSink sink) {
+    if (lexicon != null) {
+      lexicon.stem(word, length, sink);
+      return;
+    }
+    if (!dictionary.mightHaveStems(word, 0, length)) {
+      return;
+    }
+
+    SharedStemCache cache = dictionary.getStemCache();
+    if (cache == null) {
+      stem(word, length, sink, contexts.get());
+      return;
+    }
+
+    char stems[][] = cache.get(word, length);
+    if (stems != null) {
+      for (char stem[] : stems) {
+        sink.addStem(stem, stem.length);
       }
+      return;
     }
-    return stems;
+
+    StemContext context = contexts.get();
+    context.recorder.start(sink);
+    stem(word, length, context.recorder, context);
+    cache.put(word, length, context.recorder.toArray());
+  }
+
+  /**
+   * Checks whether the provided word might have any stems, using the form filter of the dictionary
+   *
+   * @param word Word to check
+   * @param length Length of the word
+   * @return {@code false} if the word definitely has no stems, {@code true} if it might have some
+   * @see HunspellDictionary#mightHaveStems(char[], int, int)
+   */
+  public boolean mightHaveStems(char word[], int length) {
+    return dictionary.mightHaveStems(word, 0, length);
   }
 
   // ================================================= Helper Methods ================================================
 
   /**
-   * Generates a list of stems for the provided word
+   * Builds the full form lexicon of the dictionary, stemming each form that can have stems.  Each thread stems the forms
+   * of a part of the words into a sorted run, and the runs are merged into the lexicon.
    *
-   * @param word Word to generate the stems for
-   * @param flags Flags from a previous stemming step that need to be cross-checked with any affixes in this recursive step
-   * @param recursionDepth Level of recursion this stemming step is at
-   * @return List of stems, pr an empty if no stems are found
+   * @param threads Number of threads used to stem the forms
+   * @return FullFormLexicon mapping the forms of the dictionary to their stems
    */
-  private List<Stem> stem(char word[], int length, char[] flags, int recursionDepth) {
-    List<Stem> stems = new ArrayList<Stem>();
+  private FullFormLexicon buildLexicon(final int threads) {
+    if (threads <= 1) {
+      return FullFormLexicon.merge(Collections.singletonList(buildLexiconRun(0, 1)));
+    }
 
-    for (int i = 0; i < length; i++) {
-      List<HunspellAffix> suffixes = dictionary.lookupSuffix(word, i, length - i);
-      if (suffixes != null) {
-        for (HunspellAffix suffix : suffixes) {
-          if (hasCrossCheckedFlag(suffix.getFlag(), flags)) {
-            int deAffixedLength = length - suffix.getAppend().length();
-            // TODO: can we do this in-place?
-            String strippedWord = new StringBuilder().append(word, 0, deAffixedLength).append(suffix.getStrip()).toString();
-
-            List<Stem> stemList = applyAffix(strippedWord.toCharArray(), strippedWord.length(), suffix, recursionDepth);
-            for (Stem stem : stemList) {
-              stem.addSuffix(suffix);
-            }
-
-            stems.addAll(stemList);
-          }
+    List<Callable<FullFormLexicon.Run>> parts = new ArrayList<Callable<FullFormLexicon.Run>>();
+    for (int i = 0; i < threads; i++) {
+      final int part = i;
+      parts.add(new Callable<FullFormLexicon.Run>() {
+        public FullFormLexicon.Run call() {
+          return buildLexiconRun(part, threads);
         }
+      });
+    }
+
+    List<FullFormLexicon.Run> runs = new ArrayList<FullFormLexicon.Run>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      for (Future<FullFormLexicon.Run> future : executor.invokeAll(parts)) {
+        runs.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while building the full form lexicon");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
       }
+      throw new RuntimeException(cause);
+    } finally {
+      executor.shutdown();
     }
+    return FullFormLexicon.merge(runs);
+  }
 
-    for (int i = length - 1; i >= 0; i--) {
-      List<HunspellAffix> prefixes = dictionary.lookupPrefix(word, 0, i);
-      if (prefixes != null) {
-        for (HunspellAffix prefix : prefixes) {
-          if (hasCrossCheckedFlag(prefix.getFlag(), flags)) {
-            int deAffixedStart = prefix.getAppend().length();
-            int deAffixedLength = length - deAffixedStart;
+  /**
+   * Stems the forms of a part of the words of the dictionary into a sorted run, on the calling thread
+   *
+   * @param part Index of the part of the words whose forms are stemmed
+   * @param parts Number of parts the words are split into
+   * @return Sorted Run holding the forms of the part that have stems, with their stems
+   */
+  private FullFormLexicon.Run buildLexiconRun(int part, int parts) {
+    final StemContext context = contexts.get();
+    final FullFormLexicon.Run run = new FullFormLexicon.Run();
+    dictionary.visitForms(new HunspellDictionary.FormVisitor() {
+      public void visitForm(char form[], int length) {
+        stem(form, length, run, context);
+        run.addForm(form, length);
+      }
+    }, part, parts);
+    run.sort();
+    return run;
+  }
 
-            String strippedWord = new StringBuilder().append(prefix.getStrip())
-                .append(word, deAffixedStart, deAffixedLength)
-                .toString();
+  /**
+   * Applies the affix rule to the given word, producing a list of stems if any are found
+   *
+   * @param strippedWord Word the affix has been removed and the strip added
+   * @param affix HunspellAffix representing the affix rule itself
+   * @param recursionDepth Level of recursion this stemming step is at
+   * @return List of stems for the word, or an empty list if none are found
+   */
+  public List<Stem> applyAffix(char strippedWord[], int length, HunspellAffix affix, int recursionDepth) {
+    StemContext context = contexts.get();
+    List<Stem> stems = new ArrayList<Stem>();
+    applyAffix(strippedWord, length, affix, recursionDepth, new StemListBuilder(stems, false, context), context);
+    return stems;
+  }
 
-            List<Stem> stemList = applyAffix(strippedWord.toCharArray(), strippedWord.length(), prefix, recursionDepth);
-            for (Stem stem : stemList) {
-              stem.addPrefix(prefix);  
-            }
+  /**
+   * Finds the stem(s) of the provided word, passing them to the given StemSink
+   *
+   * @param word Word to find the stems for
+   * @param length Length of the word
+   * @param sink StemSink the stems are passed to
+   * @param context Scratch state of the calling thread
+   */
+  private void stem(char word[], int length, StemSink sink, StemContext context) {
+    if (!dictionary.mightHaveStems(word, 0, length)) {
+      return;
+    }
+    if (dictionary.lookupWord(word, 0, length) != null) {
+      sink.addStem(word, length);
+    }
+    stem(word, length, null, 0, sink, context);
+  }
 
-            stems.addAll(stemList);
-          }
+  /**
+   * Generates the stems for the provided word, passing them to the given StemSink
+   *
+   * @param word Word to generate the stems for
+   * @param length Length of the word
+   * @param flagIds Bitset of the dense IDs of the flags from a previous stemming step that need to be cross-checked with
+   *                any affixes in this recursive step
+   * @param recursionDepth Level of recursion this stemming step is at
+   * @param sink StemSink the stems are passed to
+   * @param context Scratch state of the calling thread
+   * @return Number of stems passed to the sink
+   */
+  private int stem(char word[], int length, long[] flagIds, int recursionDepth, StemSink sink, StemContext context) {
+    List<List<HunspellAffix>> affixGroups = context.affixGroups;
+    int count = 0;
+
+    // affixGroups is used as a stack, as the recursive calls below push their groups on top of ours
+    int start = affixGroups.size();
+    dictionary.lookupSuffixes(word, 0, length, affixGroups);
+    int end = affixGroups.size();
+    for (int i = start; i < end; i++) {
+      List<HunspellAffix> suffixes = affixGroups.get(i);
+      for (int j = 0; j < suffixes.size(); j++) {
+        HunspellAffix suffix = suffixes.get(j);
+        if (hasCrossCheckedFlag(suffix.getFlagId(), flagIds)) {
+          int deAffixedLength = length - suffix.getAppend().length();
+          String strip = suffix.getStrip();
+          int strippedLength = deAffixedLength + strip.length();
+
+          char strippedWord[] = context.candidate(recursionDepth, strippedLength);
+          System.arraycopy(word, 0, strippedWord, 0, deAffixedLength);
+          strip.getChars(0, strip.length(), strippedWord, deAffixedLength);
+
+          context.suffixChain.add(suffix);
+          count += applyAffix(strippedWord, strippedLength, suffix, recursionDepth, sink, context);
+          context.suffixChain.remove(context.suffixChain.size() - 1);
         }
       }
     }
+    truncate(affixGroups, start);
+
+    start = affixGroups.size();
+    dictionary.lookupPrefixes(word, 0, length, affixGroups);
+    end = affixGroups.size();
+    for (int i = start; i < end; i++) {
+      List<HunspellAffix> prefixes = affixGroups.get(i);
+      for (int j = 0; j < prefixes.size(); j++) {
+        HunspellAffix prefix = prefixes.get(j);
+        if (hasCrossCheckedFlag(prefix.getFlagId(), flagIds)) {
+          int deAffixedStart = prefix.getAppend().length();
+          int deAffixedLength = length - deAffixedStart;
+          String strip = prefix.getStrip();
+          int strippedLength = strip.length() + deAffixedLength;
+
+          char strippedWord[] = context.candidate(recursionDepth, strippedLength);
+          strip.getChars(0, strip.length(), strippedWord, 0);
+          System.arraycopy(word, deAffixedStart, strippedWord, strip.length(), deAffixedLength);
+
+          context.prefixChain.add(prefix);
+          count += applyAffix(strippedWord, strippedLength, prefix, recursionDepth, sink, context);
+          context.prefixChain.remove(context.prefixChain.size() - 1);
+        }
+      }
+    }
+    truncate(affixGroups, start);
 
-    return stems;
+    return count;
   }
 
   /**
-   * Applies the affix rule to the given word, producing a list of stems if any are found
+   * Applies the affix rule to the given word, passing the stems found to the given StemSink
    *
    * @param strippedWord Word the affix has been removed and the strip added
+   * @param length Length of the word
    * @param affix HunspellAffix representing the affix rule itself
    * @param recursionDepth Level of recursion this stemming step is at
-   * @return List of stems for the word, or an empty list if none are found
+   * @param sink StemSink the stems are passed to
+   * @param context Scratch state of the calling thread
+   * @return Number of stems passed to the sink
    */
-  @SuppressWarnings("unchecked")
-  public List<Stem> applyAffix(char strippedWord[], int length, HunspellAffix affix, int recursionDepth) {
-    segment.setLength(0);
-    segment.append(strippedWord, 0, length);
-    if (!affix.checkCondition(segment)) {
-      return Collections.EMPTY_LIST;
+  private int applyAffix(
+      char strippedWord[],
+      int length,
+      HunspellAffix affix,
+      int recursionDepth,
+      StemSink sink,
+      StemContext context) {
+    if (!affix.checkCondition(strippedWord, 0, length)) {
+      return 0;
     }
 
     List<HunspellWord> words = dictionary.lookupWord(strippedWord, 0, length);
     if (words == null) {
-      return Collections.EMPTY_LIST;
+      return 0;
     }
 
-    List<Stem> stems = new ArrayList<Stem>();
-
-    for (HunspellWord hunspellWord : words) {
-      if (hunspellWord.hasFlag(affix.getFlag())) {
+    int count = 0;
+    for (int i = 0; i < words.size(); i++) {
+      if (words.get(i).hasFlagId(affix.getFlagId())) {
         if (affix.isCrossProduct() && recursionDepth < RECURSION_CAP) {
-          List<Stem> recursiveStems = stem(strippedWord, length, affix.getAppendFlags(), ++recursionDepth);
-          if (!recursiveStems.isEmpty()) {
-            stems.addAll(recursiveStems);
-          } else {
-            stems.add(new Stem(strippedWord, length));
+          int recursiveCount = stem(strippedWord, length, affix.getAppendFlagIds(), ++recursionDepth, sink, context);
+          if (recursiveCount > 0) {
+            count += recursiveCount;
+            continue;
           }
-        } else {
-          stems.add(new Stem(strippedWord, length));
         }
+        sink.addStem(strippedWord, length);
+        count++;
       }
     }
+    return count;
+  }
 
-    return stems;
+  /**
+   * Removes the groups of affixes from the given index on, popping them off the stack of groups
+   *
+   * @param groups Stack of groups of affixes
+   * @param start Index of the first group to remove
+   */
+  private static void truncate(List<List<HunspellAffix>> groups, int start) {
+    while (groups.size() > start) {
+      groups.remove(groups.size() - 1);
+    }
   }
 
   /**
-   * Checks if the given flag cross checks with the given array of flags
+   * Checks if the given flag cross checks with the given bitset of flags
    *
-   * @param flag Flag to cross check with the array of flags
-   * @param flags Array of flags to cross check against.  Can be {@code null}
-   * @return {@code true} if the flag is found in the array or the array is {@code null}, {@code false} otherwise
+   * @param flagId Dense ID of the flag to cross check with the bitset of flags
+   * @param flagIds Bitset of the dense IDs of the flags to cross check against.  Can be {@code null}
+   * @return {@code true} if the flag is found in the bitset or the bitset is {@code null}, {@code false} otherwise
    */
-  private boolean hasCrossCheckedFlag(char flag, char[] flags) {
-    return flags == null || Arrays.binarySearch(flags, flag) >= 0;
+  private boolean hasCrossCheckedFlag(int flagId, long[] flagIds) {
+    return flagIds == null || HunspellWord.hasFlagId(flagIds, flagId);
   }
 
-  // ================================================= Helper Methods ================================================
+  // ================================================= Inner Classes =================================================
+
+  /**
+   * Scratch state of a thread stemming words, reused for every word the thread stems
+   */
+  private static final class StemContext {
+
+    // affix groups found at each level of recursion, used as a stack
+    final List<List<HunspellAffix>> affixGroups = new ArrayList<List<HunspellAffix>>();
+    // stripped words are built in place, in the buffer of the level of recursion they are built at
+    final char candidates[][] = new char[RECURSION_CAP + 1][16];
+    // affixes stripped to get to the word being stemmed, outermost first
+    final List<HunspellAffix> prefixChain = new ArrayList<HunspellAffix>();
+    final List<HunspellAffix> suffixChain = new ArrayList<HunspellAffix>();
+    // records the stems of words missing from the shared stem cache
+    final StemRecorder recorder = new StemRecorder();
+
+    /**
+     * Returns the buffer for building stripped words at the given level of recursion, growing it to the given length
+     * if needed.  The stems found at deeper levels are built in their own buffers, so the word being stemmed at each
+     * level stays intact
+     *
+     * @param recursionDepth Level of recursion the stripped word is built at
+     * @param length Length of the stripped word
+     * @return Buffer of at least the given length
+     */
+    char[] candidate(int recursionDepth, int length) {
+      if (candidates[recursionDepth].length < length) {
+        candidates[recursionDepth] = new char[ArrayUtil.getNextSize(length)];
+      }
+      return candidates[recursionDepth];
+    }
+  }
+
+  /**
+   * StemSink that passes the stems on to another sink while recording them, so that they can be added to the shared
+   * stem cache
+   */
+  private static final class StemRecorder implements StemSink {
+
+    private StemSink sink;
+    private char chars[] = new char[64];
+    private int offsets[] = new int[5];
+    private int count;
+
+    /**
+     * Starts recording the stems of a word, passing them on to the given sink
+     *
+     * @param sink StemSink the stems are passed on to
+     */
+    void start(StemSink sink) {
+      this.sink = sink;
+      this.count = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addStem(char stem[], int length) {
+      int offset = offsets[count];
+      if (chars.length < offset + length) {
+        chars = Arrays.copyOf(chars, ArrayUtil.getNextSize(offset + length));
+      }
+      if (offsets.length == count + 1) {
+        offsets = ArrayUtil.grow(offsets, count + 2);
+      }
+      System.arraycopy(stem, 0, chars, offset, length);
+      offsets[++count] = offset + length;
+
+      sink.addStem(stem, length);
+    }
+
+    /**
+     * Copies the recorded stems into an array holding an array for each stem
+     *
+     * @return Recorded stems
+     */
+    char[][] toArray() {
+      char stems[][] = new char[count][];
+      for (int i = 0; i < count; i++) {
+        stems[i] = Arrays.copyOfRange(chars, offsets[i], offsets[i + 1]);
+      }
+      sink = null;
+      return stems;
+    }
+  }
+
+  /**
+   * StemSink that copies the stems into Stem objects, recording the affixes that were stripped to get to each stem
+   */
+  private static final class StemListBuilder implements StemSink {
+
+    private final List<Stem> stems;
+    private final CharArraySet terms;
+    private final StemContext context;
+
+    /**
+     * Creates a new StemListBuilder adding the stems to the given list
+     *
+     * @param stems List the stems are added to
+     * @param unique Whether stems equal to a stem already in the list should be left out
+     * @param context Scratch state of the thread the stems are found by, holding the affixes stripped so far
+     */
+    StemListBuilder(List<Stem> stems, boolean unique, StemContext context) {
+      this.stems = stems;
+      this.terms = unique ? new CharArraySet(Version.LUCENE_29, 8, false) : null;
+      this.context = context;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addStem(char stem[], int length) {
+      if (terms != null) {
+        if (terms.contains(stem, 0, length)) {
+          return;
+        }
+        terms.add(Arrays.copyOf(stem, length));
+      }
+
+      Stem result = new Stem(Arrays.copyOf(stem, length), length);
+      // the innermost affixes are added first, as they were when the stems were collected on the way back up
+      for (int i = context.prefixChain.size() - 1; i >= 0; i--) {
+        result.addPrefix(context.prefixChain.get(i));
+      }
+      for (int i = context.suffixChain.size() - 1; i >= 0; i--) {
+        result.addSuffix(context.suffixChain.get(i));
+      }
+      stems.add(result);
+    }
+  }
+
+  /**
+   * Receives the stems found by {@link HunspellStemmer#stem(char[], int, StemSink)}.  The chars passed are only valid
+   * for the duration of the call, so a sink needs to copy them if it keeps the stems.
+   */
+  public interface StemSink {
+
+    /**
+     * Called for each stem found for the word
+     *
+     * @param stem Char array holding the stem, starting at index 0
+     * @param length Length of the stem
+     */
+    void addStem(char stem[], int length);
+  }
 
   /**
    * Stem represents all information known about a stem of a word.  This includes the stem, and the prefixes and suffixes
@@ -21,13 +21,14 @@ import java.util.Arrays;
 
 public class HunspellWord {
   
-  private final char flags[]; // sorted, can we represent more concisely?
+  private final char flags[]; // sorted
+  private final long flagIds[]; // bitset of the dense IDs the dictionary assigned to the affix flags among the flags
 
   /**
    * Creates a new HunspellWord with no associated flags
    */
   public HunspellWord() {
-    flags = null;
+    this(null, null);
   }
 
   /**
@@ -36,7 +37,18 @@ public class HunspellWord {
    * @param flags Flags to associate with the word
    */
   public HunspellWord(char[] flags) {
+    this(flags, null);
+  }
+
+  /**
+   * Constructs a new HunspellWord with the given flags and the bitset of their dense IDs
+   *
+   * @param flags Flags to associate with the word
+   * @param flagIds Bitset of the dense IDs of the flags, as created by {@link HunspellDictionary}
+   */
+  HunspellWord(char[] flags, long[] flagIds) {
     this.flags = flags;
+    this.flagIds = flagIds;
   }
 
   /**
@@ -49,6 +61,32 @@ public class HunspellWord {
     return flags != null && Arrays.binarySearch(flags, flag) >= 0;
   }
 
+  /**
+   * Checks whether the word has the affix flag with the given dense ID associated with it
+   *
+   * @param flagId Dense ID of the affix flag, as returned by {@link HunspellAffix#getFlagId()}
+   * @return {@code true} if the flag is associated, {@code false} otherwise
+   */
+  boolean hasFlagId(int flagId) {
+    return hasFlagId(flagIds, flagId);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    return this == o || (o instanceof HunspellWord && Arrays.equals(flags, ((HunspellWord) o).flags));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(flags);
+  }
+
   // ================================================= Getters / Setters =============================================
 
   /**
@@ -59,4 +97,27 @@ public class HunspellWord {
   public char[] getFlags() {
     return flags;
   }
+
+  /**
+   * Returns the bitset of the dense IDs of the affix flags associated with the word
+   *
+   * @return Bitset of the dense IDs of the flags, or {@code null} if the word has no flags
+   */
+  long[] getFlagIds() {
+    return flagIds;
+  }
+
+  // ================================================= Helper Methods ================================================
+
+  /**
+   * Checks whether the given bitset of dense flag IDs contains the given ID
+   *
+   * @param flagIds Bitset of dense flag IDs, can be {@code null}
+   * @param flagId Dense flag ID to check
+   * @return {@code true} if the bitset contains the ID, {@code false} otherwise
+   */
+  static boolean hasFlagId(long flagIds[], int flagId) {
+    int index = flagId >>> 6;
+    return flagIds != null && index < flagIds.length && (flagIds[index] & (1L << flagId)) != 0;
+  }
 }
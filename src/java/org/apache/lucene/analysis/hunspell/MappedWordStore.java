@@ -0,0 +1,142 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * WordStore that serves lookups straight from the word table of a compiled dictionary file, as written by
+ * {@link HunspellDictionaryCompiler}.  The table is an open addressing hash table whose slots point at the word
+ * entries following it:
+ *
+ * <pre>
+ *   slotCount  int (power of two)
+ *   slot*      int, byte position of the entry, or -1 if the slot is empty
+ *   entry*     int hash, int word list ID, int length, char*
+ * </pre>
+ *
+ * Only absolute reads are made on the buffer, so a single store can be used by any number of threads.
+ */
+final class MappedWordStore implements WordStore {
+
+  private final ByteBuffer buffer;
+  private final List<List<HunspellWord>> wordLists;
+  private final int mask;
+
+  /**
+   * Creates a new MappedWordStore reading the word table from the given buffer
+   *
+   * @param buffer Buffer starting with the word table
+   * @param wordLists Lists of HunspellWords referenced by ID from the word entries
+   */
+  MappedWordStore(ByteBuffer buffer, List<List<HunspellWord>> wordLists) {
+    this.buffer = buffer;
+    this.wordLists = wordLists;
+    this.mask = buffer.getInt(0) - 1;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<HunspellWord> lookup(char word[], int offset, int length) {
+    int hash = hash(word, offset, length);
+    int slot = hash & mask;
+    int increment = probeIncrement(hash);
+
+    for (;;) {
+      int entry = buffer.getInt(4 + (slot << 2));
+      if (entry < 0) {
+        return null;
+      }
+      if (buffer.getInt(entry) == hash && equals(entry, word, offset, length)) {
+        return wordLists.get(buffer.getInt(entry + 4));
+      }
+      slot = (slot + increment) & mask;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void visit(Visitor visitor) {
+    char word[] = new char[16];
+    for (int slot = 0; slot <= mask; slot++) {
+      int entry = buffer.getInt(4 + (slot << 2));
+      if (entry < 0) {
+        continue;
+      }
+      int length = buffer.getInt(entry + 8);
+      if (length > word.length) {
+        word = new char[length];
+      }
+      for (int i = 0, position = entry + 12; i < length; i++, position += 2) {
+        word[i] = buffer.getChar(position);
+      }
+      visitor.visit(word, 0, length, wordLists.get(buffer.getInt(entry + 4)));
+    }
+  }
+
+  /**
+   * Checks whether the word stored in the entry at the given position equals the given String
+   *
+   * @param entry Byte position of the entry
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return {@code true} if the entry holds the String, {@code false} otherwise
+   */
+  private boolean equals(int entry, char word[], int offset, int length) {
+    if (buffer.getInt(entry + 8) != length) {
+      return false;
+    }
+    int position = entry + 12;
+    for (int i = offset; i < offset + length; i++, position += 2) {
+      if (buffer.getChar(position) != word[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Computes the hash code of the String created from the given char array, offset and length, as used in the table
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return Hash code of the String
+   */
+  static int hash(char word[], int offset, int length) {
+    int code = 0;
+    for (int i = offset; i < offset + length; i++) {
+      code = code * 31 + word[i];
+    }
+    return code;
+  }
+
+  /**
+   * Computes the (odd) step used to probe the table for the given hash code, so that all slots are visited
+   *
+   * @param hash Hash code to probe the table for
+   * @return Step between probed slots
+   */
+  static int probeIncrement(int hash) {
+    return ((hash >> 8) + hash) | 1;
+  }
+}
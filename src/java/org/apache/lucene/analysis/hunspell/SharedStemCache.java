@@ -0,0 +1,327 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the stems of tokens shared by all the threads stemming with a dictionary.  The cache is split into
+ * segments, each guarded by its own lock, so threads looking up different tokens rarely wait for each other.  Each
+ * segment evicts its least recently used token once full, but only admits a new token if a frequency sketch says it
+ * was seen more often than the token it would evict (TinyLFU), so a stream of rare tokens cannot flush the frequent
+ * ones out of the cache.
+ *
+ * The stems are cached as found by {@link HunspellStemmer#stem(char[], int, HunspellStemmer.StemSink)}, duplicates
+ * included.
+ */
+final class SharedStemCache {
+
+  private static final char[][] NO_STEMS = new char[0][];
+  private static final int MAX_SEGMENTS = 16;
+
+  private final Segment segments[];
+  private final int segmentMask;
+
+  /**
+   * Creates a new SharedStemCache holding the stems of about the given number of tokens
+   *
+   * @param maxSize Maximum number of tokens the cache holds the stems of
+   */
+  SharedStemCache(int maxSize) {
+    this(maxSize, segmentCount(maxSize));
+  }
+
+  /**
+   * Creates a new SharedStemCache holding the stems of about the given number of tokens in the given number of segments
+   *
+   * @param maxSize Maximum number of tokens the cache holds the stems of
+   * @param segmentCount Number of segments the tokens are split into, a power of 2
+   */
+  SharedStemCache(int maxSize, int segmentCount) {
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment((maxSize + segmentCount - 1) / segmentCount);
+    }
+    segmentMask = segmentCount - 1;
+  }
+
+  /**
+   * Returns the stems cached for the given token, counting the lookup as a hit or a miss
+   *
+   * @param token Char array holding the token, starting at index 0
+   * @param length Length of the token
+   * @return Stems of the token, an empty array if it has none, or {@code null} if the token is not cached
+   */
+  char[][] get(char token[], int length) {
+    int hash = StemCache.Key.hash(token, length);
+    return segmentFor(hash).get(token, length, hash);
+  }
+
+  /**
+   * Caches the given stems for the given token, if the admission policy lets the token in
+   *
+   * @param token Char array holding the token, starting at index 0
+   * @param length Length of the token
+   * @param stems Stems of the token
+   */
+  void put(char token[], int length, char stems[][]) {
+    int hash = StemCache.Key.hash(token, length);
+    segmentFor(hash).put(token, length, hash, stems.length == 0 ? NO_STEMS : stems);
+  }
+
+  /**
+   * Returns the number of lookups that found the token in the cache
+   *
+   * @return Number of cache hits
+   */
+  long getHits() {
+    long hits = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        hits += segment.hits;
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that did not find the token in the cache
+   *
+   * @return Number of cache misses
+   */
+  long getMisses() {
+    long misses = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        misses += segment.misses;
+      }
+    }
+    return misses;
+  }
+
+  // ================================================= Helper Methods ================================================
+
+  /**
+   * Returns the number of segments for a cache of the given size, doubling up to 16 while each still holds 2 tokens
+   *
+   * @param maxSize Maximum number of tokens the cache holds the stems of
+   * @return Number of segments, a power of 2
+   */
+  private static int segmentCount(int maxSize) {
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENTS && segmentCount * 2 <= maxSize) {
+      segmentCount <<= 1;
+    }
+    return segmentCount;
+  }
+
+  /**
+   * Returns the segment holding the tokens with the given hash code
+   *
+   * @param hash Hash code of a token
+   * @return Segment for the token
+   */
+  private Segment segmentFor(int hash) {
+    // the low bits pick the slot within the segment's map, so the segment is picked from differently mixed bits
+    return segments[((hash * 0x9E3779B9) >>> 16) & segmentMask];
+  }
+
+  // ================================================= Inner Classes =================================================
+
+  /**
+   * Segment of the cache: an LRU map with its own frequency sketch, only accessed while holding its lock
+   */
+  private static final class Segment {
+
+    private final int capacity;
+    private final LinkedHashMap<StemCache.Key, char[][]> entries;
+    private final FrequencySketch sketch;
+    private final StemCache.Key probe = new StemCache.Key();
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new Segment holding at most the given number of tokens
+     *
+     * @param capacity Maximum number of tokens the segment holds
+     */
+    Segment(int capacity) {
+      this.capacity = capacity;
+      this.entries = new LinkedHashMap<StemCache.Key, char[][]>(16, 0.75f, true);
+      this.sketch = new FrequencySketch(capacity);
+    }
+
+    /**
+     * Returns the stems cached for the given token, recording the access in the frequency sketch
+     *
+     * @param token Char array holding the token, starting at index 0
+     * @param length Length of the token
+     * @param hash Hash code of the token
+     * @return Stems of the token, or {@code null} if the token is not cached
+     */
+    synchronized char[][] get(char token[], int length, int hash) {
+      sketch.increment(hash);
+
+      probe.set(token, length, hash);
+      char stems[][] = entries.get(probe);
+      probe.set(null, 0, 0);
+
+      if (stems == null) {
+        misses++;
+      } else {
+        hits++;
+      }
+      return stems;
+    }
+
+    /**
+     * Caches the given stems for the given token.  Once the segment is full, the token only replaces the least
+     * recently used token if it has been seen more often.  A token that is already cached, because another thread
+     * missed it at the same time, only has its stems replaced
+     *
+     * @param token Char array holding the token, starting at index 0
+     * @param length Length of the token
+     * @param hash Hash code of the token
+     * @param stems Stems of the token
+     */
+    synchronized void put(char token[], int length, int hash, char stems[][]) {
+      probe.set(token, length, hash);
+      boolean cached = entries.containsKey(probe);
+      probe.set(null, 0, 0);
+
+      if (!cached && entries.size() >= capacity) {
+        Iterator<StemCache.Key> eldest = entries.keySet().iterator();
+        StemCache.Key victim = eldest.next();
+        if (sketch.frequency(hash) <= sketch.frequency(victim.hashCode())) {
+          return;
+        }
+        eldest.remove();
+      }
+
+      StemCache.Key key = new StemCache.Key();
+      key.set(Arrays.copyOf(token, length), length, hash);
+      entries.put(key, stems);
+    }
+  }
+
+  /**
+   * Count-min sketch of 4 bit counters, packed two to a byte, estimating how often tokens have been seen recently.  All
+   * counters are halved once as many accesses as ten times the capacity have been counted, so the estimates follow
+   * changes in the distribution of the tokens
+   */
+  private static final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final int SEEDS[] = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    // the counter of an even index is in the low 4 bits of a byte, and the counter of the next odd index in the high 4
+    private final byte counters[][];
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * Creates a new FrequencySketch for a cache of the given capacity
+     *
+     * @param capacity Number of tokens the cache holds
+     */
+    FrequencySketch(int capacity) {
+      int width = 16;
+      while (width < capacity * 2) {
+        width <<= 1;
+      }
+      counters = new byte[SEEDS.length][width / 2];
+      mask = width - 1;
+      sampleSize = Math.max(10 * capacity, 16);
+    }
+
+    /**
+     * Counts an access to the token with the given hash code
+     *
+     * @param hash Hash code of the token
+     */
+    void increment(int hash) {
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = index(hash, i);
+        if (count(i, index) < MAX_COUNT) {
+          counters[i][index >>> 1] += 1 << shift(index);
+        }
+      }
+
+      if (++additions == sampleSize) {
+        for (byte row[] : counters) {
+          for (int i = 0; i < row.length; i++) {
+            row[i] = (byte) (row[i] >>> 1 & 0x77); // halves both counters, dropping the bit shifted between them
+          }
+        }
+        additions /= 2;
+      }
+    }
+
+    /**
+     * Estimates how often the token with the given hash code has been seen recently
+     *
+     * @param hash Hash code of the token
+     * @return Estimated number of accesses
+     */
+    int frequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = Math.min(frequency, count(i, index(hash, i)));
+      }
+      return frequency;
+    }
+
+    /**
+     * Returns the index of the counter for the token with the given hash code in the given row
+     *
+     * @param hash Hash code of the token
+     * @param row Row of counters
+     * @return Index of the counter in the row
+     */
+    private int index(int hash, int row) {
+      int h = hash * SEEDS[row];
+      return (h ^ (h >>> 15)) & mask;
+    }
+
+    /**
+     * Returns the value of the counter at the given index in the given row
+     *
+     * @param row Row of counters
+     * @param index Index of the counter in the row
+     * @return Value of the counter
+     */
+    private int count(int row, int index) {
+      return counters[row][index >>> 1] >>> shift(index) & MAX_COUNT;
+    }
+
+    /**
+     * Returns the position of the counter at the given index within its byte
+     *
+     * @param index Index of a counter in a row
+     * @return Number of bits below the counter in its byte
+     */
+    private static int shift(int index) {
+      return (index & 1) << 2;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded cache of the stems of tokens, evicting the least recently used token once full.  As natural language
+ * text is dominated by a small number of frequent words, most tokens are resolved with a single hash lookup instead of
+ * being stemmed again.  Lookups go through a reusable probe key wrapping the token's chars, so only misses allocate.
+ *
+ * A StemCache is not thread safe, each {@link HunspellStemFilter} holds its own.
+ */
+final class StemCache {
+
+  private static final char[][] NO_STEMS = new char[0][];
+
+  private final Map<Key, char[][]> entries;
+  private final Key probe = new Key();
+
+  private long hits;
+  private long misses;
+
+  /**
+   * Creates a new StemCache holding the stems of at most the given number of tokens
+   *
+   * @param maxSize Maximum number of tokens the cache holds the stems of
+   */
+  StemCache(final int maxSize) {
+    this.entries = new LinkedHashMap<Key, char[][]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, char[][]> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the stems cached for the given token, counting the lookup as a hit or a miss
+   *
+   * @param token Char array holding the token, starting at index 0
+   * @param length Length of the token
+   * @return Stems of the token, an empty array if it has none, or {@code null} if the token is not cached
+   */
+  char[][] get(char token[], int length) {
+    probe.set(token, length);
+    char stems[][] = entries.get(probe);
+    probe.set(null, 0);
+
+    if (stems == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return stems;
+  }
+
+  /**
+   * Caches the given stems for the given token
+   *
+   * @param token Char array holding the token, starting at index 0
+   * @param length Length of the token
+   * @param stems Stems of the token
+   */
+  void put(char token[], int length, char stems[][]) {
+    Key key = new Key();
+    key.set(Arrays.copyOf(token, length), length);
+    entries.put(key, stems.length == 0 ? NO_STEMS : stems);
+  }
+
+  // ================================================= Getters / Setters =============================================
+
+  /**
+   * Returns the number of lookups that found the token in the cache
+   *
+   * @return Number of cache hits
+   */
+  long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of lookups that did not find the token in the cache
+   *
+   * @return Number of cache misses
+   */
+  long getMisses() {
+    return misses;
+  }
+
+  // ================================================= Inner Classes =================================================
+
+  /**
+   * Key of the cache, comparing the chars of a token.  The probe key wraps the caller's array, the stored keys hold
+   * their own copy
+   */
+  static final class Key {
+
+    private char chars[];
+    private int length;
+    private int hash;
+
+    /**
+     * Sets the token the key holds
+     *
+     * @param chars Char array holding the token, starting at index 0
+     * @param length Length of the token
+     */
+    void set(char chars[], int length) {
+      set(chars, length, hash(chars, length));
+    }
+
+    /**
+     * Sets the token the key holds, along with its already computed hash code
+     *
+     * @param chars Char array holding the token, starting at index 0
+     * @param length Length of the token
+     * @param hash Hash code of the token, as computed by {@link #hash(char[], int)}
+     */
+    void set(char chars[], int length, int hash) {
+      this.chars = chars;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    /**
+     * Computes the hash code of the given token
+     *
+     * @param chars Char array holding the token, starting at index 0
+     * @param length Length of the token
+     * @return Hash code of the token
+     */
+    static int hash(char chars[], int length) {
+      int code = 0;
+      for (int i = 0; i < length; i++) {
+        code = code * 31 + chars[i];
+      }
+      return code;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      if (other.hash != hash || other.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (other.chars[i] != chars[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
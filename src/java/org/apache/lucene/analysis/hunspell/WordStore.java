@@ -0,0 +1,59 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.List;
+
+/**
+ * Storage of the words read from hunspell dictionary files, mapping each word to the HunspellWords defined for it
+ */
+interface WordStore {
+
+  /**
+   * Looks up the HunspellWords stored for the String created from the given char array, offset and length
+   *
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return List of HunspellWords stored for the String, or {@code null} if the String is not stored
+   */
+  List<HunspellWord> lookup(char word[], int offset, int length);
+
+  /**
+   * Passes every stored word, together with the HunspellWords stored for it, to the given Visitor
+   *
+   * @param visitor Visitor the words are passed to
+   */
+  void visit(Visitor visitor);
+
+  /**
+   * Receives the words of a WordStore from {@link WordStore#visit(Visitor)}
+   */
+  interface Visitor {
+
+    /**
+     * Visits a stored word.  The char array may be reused for the next word, so it must not be kept
+     *
+     * @param word Char array holding the word
+     * @param offset Offset in the char array that the word starts at
+     * @param length Length from the offset that the word is
+     * @param wordForms HunspellWords stored for the word
+     */
+    void visit(char word[], int offset, int length, List<HunspellWord> wordForms);
+  }
+}
@@ -0,0 +1,199 @@
+package org.apache.lucene.analysis.hunspell;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only open addressing hash table holding the words of a dictionary in primitive arrays.  The chars of all words
+ * are kept in a single arena, and each word refers to its (shared) list of HunspellWords by ID, so a lookup touches
+ * the slot arrays, the entry arrays and the arena and nothing else until the list is found.  The hash code of each
+ * word is cached next to its slot, so that most mismatches are rejected without looking at the word.
+ *
+ * <pre>
+ *   slot   int hash, int entry (or -1 if the slot is empty)
+ *   entry  int offset in the arena, int length, int word list ID
+ * </pre>
+ *
+ * The table is never modified once it is built, so a single table can be used by any number of threads.
+ */
+final class WordTable implements WordStore {
+
+  private final int slotHashes[];
+  private final int slotEntries[];
+  private final int mask;
+
+  private final char chars[];
+  private final int offsets[];
+  private final int lengths[];
+  private final int wordListIds[];
+
+  private final List<List<HunspellWord>> wordLists = new ArrayList<List<HunspellWord>>();
+
+  /**
+   * Creates a new WordTable containing the words of the given map
+   *
+   * @param words Map of words to the HunspellWords defined for them
+   */
+  WordTable(CharArrayMap<List<HunspellWord>> words) {
+    int count = words.size();
+    offsets = new int[count];
+    lengths = new int[count];
+    wordListIds = new int[count];
+
+    int slotCount = 2;
+    while (slotCount < count * 2) {
+      slotCount <<= 1;
+    }
+    slotHashes = new int[slotCount];
+    slotEntries = new int[slotCount];
+    Arrays.fill(slotEntries, -1);
+    mask = slotCount - 1;
+
+    int size = 0;
+    for (Object word : words.keySet()) {
+      size += ((char[]) word).length;
+    }
+    chars = new char[size];
+
+    Map<List<HunspellWord>, Integer> ids = new HashMap<List<HunspellWord>, Integer>();
+    CharArrayMap<List<HunspellWord>>.EntryIterator iterator = words.entrySet().iterator();
+    int offset = 0;
+    for (int entry = 0; iterator.hasNext(); entry++) {
+      char word[] = iterator.nextKey();
+      List<HunspellWord> wordList = iterator.currentValue();
+
+      Integer id = ids.get(wordList);
+      if (id == null) {
+        id = wordLists.size();
+        ids.put(wordList, id);
+        wordLists.add(wordList);
+      }
+
+      System.arraycopy(word, 0, chars, offset, word.length);
+      offsets[entry] = offset;
+      lengths[entry] = word.length;
+      wordListIds[entry] = id;
+      offset += word.length;
+
+      int hash = MappedWordStore.hash(word, 0, word.length);
+      int slot = hash & mask;
+      int increment = MappedWordStore.probeIncrement(hash);
+      while (slotEntries[slot] != -1) {
+        slot = (slot + increment) & mask;
+      }
+      slotHashes[slot] = hash;
+      slotEntries[slot] = entry;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<HunspellWord> lookup(char word[], int offset, int length) {
+    int hash = MappedWordStore.hash(word, offset, length);
+    int slot = hash & mask;
+    int increment = MappedWordStore.probeIncrement(hash);
+
+    for (;;) {
+      int entry = slotEntries[slot];
+      if (entry < 0) {
+        return null;
+      }
+      if (slotHashes[slot] == hash && equals(entry, word, offset, length)) {
+        return wordLists.get(wordListIds[entry]);
+      }
+      slot = (slot + increment) & mask;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void visit(Visitor visitor) {
+    for (int entry = 0; entry < offsets.length; entry++) {
+      visitor.visit(chars, offsets[entry], lengths[entry], wordLists.get(wordListIds[entry]));
+    }
+  }
+
+  /**
+   * Returns the number of words in the table
+   *
+   * @return Number of words in the table
+   */
+  int size() {
+    return offsets.length;
+  }
+
+  /**
+   * Returns a copy of the word held by the given entry
+   *
+   * @param entry Index of the entry, from 0 up to {@link #size()}
+   * @return Copy of the chars of the word
+   */
+  char[] getWord(int entry) {
+    return Arrays.copyOfRange(chars, offsets[entry], offsets[entry] + lengths[entry]);
+  }
+
+  /**
+   * Returns the ID of the list of HunspellWords of the given entry
+   *
+   * @param entry Index of the entry, from 0 up to {@link #size()}
+   * @return ID of the list of HunspellWords, an index into {@link #getWordLists()}
+   */
+  int getWordListId(int entry) {
+    return wordListIds[entry];
+  }
+
+  /**
+   * Returns the distinct lists of HunspellWords referenced by the entries
+   *
+   * @return Distinct lists of HunspellWords
+   */
+  List<List<HunspellWord>> getWordLists() {
+    return wordLists;
+  }
+
+  // ================================================= Helper Methods ================================================
+
+  /**
+   * Checks whether the word held by the given entry equals the given String
+   *
+   * @param entry Index of the entry
+   * @param word Char array to generate the String from
+   * @param offset Offset in the char array that the String starts at
+   * @param length Length from the offset that the String is
+   * @return {@code true} if the entry holds the String, {@code false} otherwise
+   */
+  private boolean equals(int entry, char word[], int offset, int length) {
+    if (lengths[entry] != length) {
+      return false;
+    }
+    int position = offsets[entry];
+    for (int i = offset; i < offset + length; i++, position++) {
+      if (chars[position] != word[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,554 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import static java.util.Arrays.copyOf;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FSM {
+  static final int MAGIC = 0x46534D41; // "FSMA"
+  static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 20;
+
+  public static FSMBuilder builder() {
+    return new FSMBuilder();
+  }
+
+  /**
+   * Creates a builder for words that are put in sorted order, which builds large automata much faster and in less
+   * memory than {@link #builder()}
+   */
+  public static FSMBuilder sortedBuilder() {
+    return new FSMBuilder(true);
+  }
+
+  /**
+   * Reads an automaton written by {@link #save(OutputStream)} into the heap, and closes the stream
+   */
+  public static FSM load(InputStream stream) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      byte[] chunk = new byte[8192];
+      for (int n = stream.read(chunk); n >= 0; n = stream.read(chunk))
+        bytes.write(chunk, 0, n);
+    } finally {
+      stream.close();
+    }
+
+    FSM view = load(ByteBuffer.wrap(bytes.toByteArray()));
+    int[] table = new int[view.table.capacity()];
+    view.table.get(table);
+    return view.wide ? new FSM(table, view.wideCharMap) : new FSM(table, view.charMap);
+  }
+
+  /**
+   * Opens an automaton written by {@link #save(OutputStream)} over the given buffer, without copying its table: the
+   * lookups read the buffer, so an automaton in a mapped file stays off the heap.  Only the code map of the chars, of
+   * at most 128KB, is built on the heap.
+   *
+   * @param buffer buffer positioned at the start of the automaton, which is left positioned after its end
+   */
+  public static FSM load(ByteBuffer buffer) throws IOException {
+    ByteBuffer header = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+      throw new IOException("Not a saved automaton");
+    int version = header.getInt();
+    if (version != VERSION)
+      throw new IOException("Unsupported automaton version " + version + " (expected " + VERSION + ")");
+    boolean wide = header.getInt() != 0;
+    int alphabetSize = header.getInt();
+    int tableSize = header.getInt();
+
+    if (alphabetSize < 0 || alphabetSize > (wide ? Character.MAX_VALUE : 255))
+      throw new IOException("Invalid automaton alphabet of " + alphabetSize + " chars");
+    if (header.remaining() < alphabetSize * 2)
+      throw new IOException("Truncated automaton alphabet of " + alphabetSize + " chars");
+
+    // codes are the positions of the chars in the alphabet, starting at 1 (0 is reserved for chars outside it)
+    char[] codes = new char[Character.MAX_VALUE + 1];
+    for (int i = 1; i <= alphabetSize; i++)
+      codes[header.getChar()] = (char) i;
+
+    int tableStart = HEADER_BYTES + alignedCharBytes(alphabetSize);
+    if (tableSize < 0 || header.limit() - tableStart < tableSize * 4L)
+      throw new IOException("Truncated automaton of " + tableSize + " ints");
+    header.position(tableStart);
+    IntBuffer table = header.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    table.limit(tableSize);
+    buffer.position(buffer.position() + tableStart + tableSize * 4);
+
+    if (wide)
+      return new FSM(table.slice(), codes);
+
+    byte[] charMap = new byte[Character.MAX_VALUE + 1];
+    for (int c = 0; c < codes.length; c++)
+      charMap[c] = (byte) codes[c];
+    return new FSM(table.slice(), charMap);
+  }
+
+  /**
+   * Memory maps an automaton written by {@link #save(OutputStream)} to the given file, so that opening takes constant
+   * time regardless of its size, and processes opening the same file share its pages
+   */
+  public static FSM open(File file) throws IOException {
+    ByteBuffer buffer;
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+    } finally {
+      raf.close();
+    }
+    return load(buffer);
+  }
+
+  /**
+   * Writes the automaton in its raw little-endian form, and closes the stream:
+   *
+   * <pre>
+   *   magic         int "FSMA"
+   *   version       int
+   *   wide          int, 1 if the transitions take two ints, 0 if they are packed into one
+   *   alphabetSize  int
+   *   tableSize     int
+   *   alphabet      char* in the order of their codes, padded with a 0 char to a multiple of 4 bytes
+   *   table         int*, see the binary form at the end of this class
+   * </pre>
+   */
+  public void save(OutputStream stream) throws IOException {
+    char[] alphabet = new char[Character.MAX_VALUE];
+    int alphabetSize = 0;
+    for (int c = 0; c <= Character.MAX_VALUE; c++) {
+      int code = code((char) c);
+      if (code > 0) {
+        alphabet[code - 1] = (char) c;
+        alphabetSize = Math.max(alphabetSize, code);
+      }
+    }
+
+    try {
+      ByteBuffer chunk = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+      chunk.putInt(MAGIC).putInt(VERSION).putInt(wide ? 1 : 0).putInt(alphabetSize).putInt(table.capacity());
+      for (int i = 0; i < alignedCharBytes(alphabetSize) / 2; i++) {
+        if (chunk.remaining() < 2)
+          flush(chunk, stream);
+        chunk.putChar(i < alphabetSize ? alphabet[i] : 0);
+      }
+      for (int i = 0; i < table.capacity(); i++) {
+        if (chunk.remaining() < 4)
+          flush(chunk, stream);
+        chunk.putInt(table.get(i));
+      }
+      flush(chunk, stream);
+    } finally {
+      stream.close();
+    }
+  }
+
+  private static void flush(ByteBuffer chunk, OutputStream stream) throws IOException {
+    stream.write(chunk.array(), 0, chunk.position());
+    chunk.clear();
+  }
+
+  private static int alignedCharBytes(int count) {
+    return (count * 2 + 3) & ~3;
+  }
+
+  private static final int DENSE = 0x80000000;
+
+  // the table is read with absolute gets only, so a mapped table can be shared by any number of threads
+  private final IntBuffer table;
+  private final byte[] charMap;
+  private final char[] wideCharMap;
+  private final boolean wide;
+
+  FSM(int[] table, byte[] charMap) {
+    this(IntBuffer.wrap(table), charMap);
+  }
+
+  FSM(int[] table, char[] wideCharMap) {
+    this(IntBuffer.wrap(table), wideCharMap);
+  }
+
+  private FSM(IntBuffer table, byte[] charMap) {
+    this.table = table;
+    this.charMap = charMap;
+    this.wideCharMap = null;
+    this.wide = false;
+  }
+
+  private FSM(IntBuffer table, char[] wideCharMap) {
+    this.table = table;
+    this.charMap = null;
+    this.wideCharMap = wideCharMap;
+    this.wide = true;
+  }
+
+  public int sizeInKb() {
+    return table.capacity() * 4 / 1024;
+  }
+
+  public Pair<Integer, int[]> lookup(CharSequence word) {
+    Match match = new Match();
+    lookup(word, match);
+
+    int[] annotations = new int[annotationCount(match.state)];
+    for (int i = 0; i < annotations.length; i++)
+      annotations[i] = annotation(match.state, i);
+    return Pair.of(match.length, annotations);
+  }
+
+  public List<Integer> lookup2(CharSequence word) {
+    int[] buffer = new int[word.length()];
+    int count = lookup2(word, buffer);
+
+    List<Integer> lengths = new ArrayList<Integer>(count);
+    for (int i = 0; i < count; i++)
+      lengths.add(buffer[i]);
+    return lengths;
+  }
+
+  /**
+   * Finds the longest prefix of the given word accepted by the automaton, without allocating.  The annotations of the
+   * prefix are read with {@link #annotation(int, int)} from the state stored in the match.
+   *
+   * @param match receives the length of the prefix and the state it leads to, which are 0 if no prefix is accepted
+   */
+  public void lookup(CharSequence word, Match match) {
+    walk(word, null, 0, word.length(), match, null);
+  }
+
+  /**
+   * Same as {@link #lookup(CharSequence, Match)}, for the given range of a char array
+   */
+  public void lookup(char[] word, int offset, int length, Match match) {
+    walk(null, word, offset, length, match, null);
+  }
+
+  /**
+   * Finds the lengths of all prefixes of the given word accepted by the automaton, without allocating.
+   *
+   * @param lengths receives the lengths, shortest first; a buffer as long as the word always suffices
+   * @return the number of lengths written to the buffer
+   */
+  public int lookup2(CharSequence word, int[] lengths) {
+    return walk(word, null, 0, word.length(), null, lengths);
+  }
+
+  /**
+   * Same as {@link #lookup2(CharSequence, int[])}, for the given range of a char array
+   */
+  public int lookup2(char[] word, int offset, int length, int[] lengths) {
+    return walk(null, word, offset, length, null, lengths);
+  }
+
+  // walks the automaton over the chars of either the sequence or the array, storing the longest accepted prefix in the
+  // match and the lengths of all accepted prefixes in the buffer, each if not null, and returns the number of lengths
+  private int walk(CharSequence sequence, char[] array, int offset, int length, Match match, int[] lengths) {
+    int count = 0;
+    int matchLength = 0;
+    int matchState = 0;
+
+    int state = 0;
+
+    for (int i = 0; i < length; i++) {
+      state = nextState(state, array != null ? array[offset + i] : sequence.charAt(offset + i));
+
+      if (state < 0)
+        break;
+
+      if (annotationCount(state) > 0) {
+        if (lengths != null)
+          lengths[count] = i + 1;
+        count++;
+        matchState = state;
+        matchLength = i + 1;
+      }
+    }
+
+    if (match != null) {
+      match.length = matchLength;
+      match.state = matchState;
+    }
+    return count;
+  }
+
+  /**
+   * Walks the automaton over the whole of the given word, without allocating.
+   *
+   * @return the state the word leads to, or -1 if the automaton has no path for the word
+   */
+  public int find(char[] word, int offset, int length) {
+    int state = 0;
+
+    for (int i = offset; i < offset + length; i++) {
+      state = nextState(state, word[i]);
+
+      if (state < 0)
+        return -1;
+    }
+
+    return state;
+  }
+
+  /**
+   * Follows the transition for the given char out of the given state, without allocating.
+   *
+   * @return the state the transition leads to, or -1 if the state has no transition for the char
+   */
+  public int step(int state, char c) {
+    return nextState(state, c);
+  }
+
+  /**
+   * Passes every word accepted by the automaton, that is every path from the root to an annotated state, to the given
+   * visitor, in the order of the codes of their chars.  The char array passed to the visitor is reused for every word.
+   */
+  public void visit(Visitor visitor) {
+    char[] alphabet = new char[wide ? Character.MAX_VALUE + 1 : 256];
+    for (int c = 0; c <= Character.MAX_VALUE; c++)
+      alphabet[code((char) c)] = (char) c;
+
+    // the path of the current word: the state at every depth and the index of its next transition to follow
+    char[] word = new char[16];
+    int[] states = new int[16];
+    int[] next = new int[16];
+    int depth = 0;
+
+    if (annotationCount(0) > 0)
+      visitor.visit(word, 0, 0);
+
+    while (depth >= 0) {
+      int state = states[depth];
+      int index = next[depth]++;
+
+      if (index == edgeCount(state)) {
+        depth--;
+        continue;
+      }
+
+      int target = edgeTarget(state, index);
+      if (target < 0)
+        continue;
+
+      if (depth + 1 == states.length) {
+        word = copyOf(word, states.length * 2);
+        states = copyOf(states, states.length * 2);
+        next = copyOf(next, states.length);
+      }
+      word[depth++] = alphabet[edgeCode(state, index)];
+      states[depth] = target;
+      next[depth] = 0;
+
+      if (annotationCount(target) > 0)
+        visitor.visit(word, depth, target);
+    }
+  }
+
+  public int annotationCount(int state) {
+    return (table.get(state) & 0x7FFF0000) >>> 16;
+  }
+
+  public int annotation(int state, int index) {
+    return table.get(annotationStart(state) + index);
+  }
+
+  private int code(char c) {
+    return wide ? wideCharMap[c] : charMap[c] & 0xFF;
+  }
+
+  private int nextState(int state, char c) {
+    if (table.get(state) < 0)
+      return nextDenseState(state, c);
+    return wide ? nextWideState(state, c) : nextNarrowState(state, c);
+  }
+
+  private int nextDenseState(int state, char c) {
+    int range = table.get(state + 1);
+    int index = code(c) - (range & 0x0000FFFF);
+    if (index < 0 || index >= range >>> 16)
+      return -1; // char is outside the range of keys, or not part of the alphabet
+
+    int next = table.get(state + 2 + index);
+    return next == 0 ? -1 : next;
+  }
+
+  private int nextNarrowState(int state, char c) {
+    int key = charMap[c] & 0xFF;
+    if (key == 0)
+      return -1; // char is not part of the alphabet
+
+    int low = state + 1;
+    int high = low + transitionCount(state) - 1;
+
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midVal = table.get(mid) & 0x000000FF;
+
+      if (midVal < key)
+        low = mid + 1;
+      else if (midVal > key)
+        high = mid - 1;
+      else
+        return (table.get(mid) & 0xFFFFFF00) >>> 8; // key found
+    }
+    return -1;  // key not found.
+  }
+
+  private int nextWideState(int state, char c) {
+    int key = wideCharMap[c];
+    if (key == 0)
+      return -1; // char is not part of the alphabet
+
+    int first = state + 1;
+    int low = 0;
+    int high = transitionCount(state) - 1;
+
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midVal = table.get(first + mid * 2);
+
+      if (midVal < key)
+        low = mid + 1;
+      else if (midVal > key)
+        high = mid - 1;
+      else
+        return table.get(first + mid * 2 + 1); // key found
+    }
+    return -1;  // key not found.
+  }
+
+  // number of transitions of the state, counting the empty slots of dense states
+  private int edgeCount(int state) {
+    if (table.get(state) < 0)
+      return table.get(state + 1) >>> 16;
+    return transitionCount(state);
+  }
+
+  // target of the transition at the given index of the state, or -1 for an empty slot of a dense state
+  private int edgeTarget(int state, int index) {
+    if (table.get(state) < 0) {
+      int next = table.get(state + 2 + index);
+      return next == 0 ? -1 : next;
+    }
+    if (wide)
+      return table.get(state + 2 + index * 2);
+    return (table.get(state + 1 + index) & 0xFFFFFF00) >>> 8;
+  }
+
+  // coded char of the transition at the given index of the state
+  private int edgeCode(int state, int index) {
+    if (table.get(state) < 0)
+      return (table.get(state + 1) & 0x0000FFFF) + index;
+    if (wide)
+      return table.get(state + 1 + index * 2);
+    return table.get(state + 1 + index) & 0x000000FF;
+  }
+
+  private int transitionCount(int state) {
+    return table.get(state) & 0x0000FFFF;
+  }
+
+  private int annotationStart(int state) {
+    if (table.get(state) < 0)
+      return state + 2 + (table.get(state + 1) >>> 16);
+    return state + 1 + (wide ? transitionCount(state) * 2 : transitionCount(state));
+  }
+
+  /**
+   * Result of {@link FSM#lookup(CharSequence, Match)}, which callers keep and pass to every lookup so that none allocates
+   */
+  public static final class Match {
+    private int length;
+    private int state;
+
+    /**
+     * Returns the length of the longest prefix accepted by the automaton, or 0 if there is none
+     */
+    public int getLength() {
+      return length;
+    }
+
+    /**
+     * Returns the state the longest accepted prefix leads to, to read its annotations from
+     */
+    public int getState() {
+      return state;
+    }
+  }
+
+  /**
+   * Receives the words accepted by an automaton from {@link FSM#visit(Visitor)}
+   */
+  public interface Visitor {
+    /**
+     * @param word chars of the word, starting at index 0
+     * @param length length of the word
+     * @param state state the word leads to, to read its annotations from
+     */
+    void visit(char[] word, int length, int state);
+  }
+
+  static int stateValue(int annotationCount, int transitionCount, boolean dense) {
+    return (dense ? DENSE : 0) | annotationCount << 16 | transitionCount;
+  }
+
+  static int rangeValue(int firstKey, int keyCount) {
+    return keyCount << 16 | firstKey;
+  }
+
+  static int transitionValue(int state, int key) {
+    return state << 8 | key;
+  }
+  /*
+   binary form:
+     state*
+
+   state:
+     dense flag 1bit, annotationCount 15bit, transitionCount 16bit
+     transition* or, when the dense flag is set, range and slot*
+     annotation*
+
+   range, for states with many transitions over a compact range of coded chars:
+     number of slots 16bit, coded char of the first slot 16bit
+
+   slot, one for every coded char of the range:
+     state offset 32bit, or 0 if the state has no transition for the char
+
+   transition, when the alphabet has at most 255 chars and the table at most 16M ints:
+     state offset 24bit, coded char 8bit (0 is reserved for chars outside the alphabet)
+
+   wide transition, otherwise:
+     coded char 32bit (0 is reserved for chars outside the alphabet)
+     state offset 32bit
+
+   annotation:
+     32bit
+  */
+}
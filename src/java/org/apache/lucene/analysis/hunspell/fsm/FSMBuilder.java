@@ -0,0 +1,242 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.BitSet;
+import static java.util.Arrays.copyOf;
+
+public class FSMBuilder {
+  final Registry registry; // package private so that tests can check the pool
+  private final BitSet alphabet = new BitSet();
+
+  // the states on the path of the word being put, starting at the root, which are the only ones not registered; they
+  // are reused for every word
+  private State[] path = newStates(16, 0);
+  private final State root = path[0];
+
+  // unsorted mode: the slots of the transitions along the path, the states unregistered along it, and the state a new
+  // suffix is built in
+  private int[] slots;
+  private int[] unregistered;
+  private State suffix;
+
+  // sorted mode: the previous word, whose states along the path are not yet registered
+  private final boolean sorted;
+  private char[] previous;
+  private int previousLength;
+
+  public FSMBuilder() {
+    this(false);
+  }
+
+  /**
+   * @param sorted whether the words are put in sorted order, comparing them char by char.  Sorted words are added with
+   *               the sorted algorithm of Daciuk et al, which only ever minimizes the path of the previous word, so that
+   *               no state is cloned or removed from the registry
+   */
+  public FSMBuilder(boolean sorted) {
+    this.sorted = sorted;
+    // the unsorted algorithm clones the states that more than one transition leads to before changing them
+    this.registry = new Registry(!sorted);
+    if (sorted)
+      previous = new char[16];
+    else {
+      slots = new int[16];
+      unregistered = new int[16];
+      suffix = new State();
+    }
+  }
+
+  public void put(CharSequence word, int annotation) {
+    for (int i = 0; i < word.length(); i++)
+      alphabet.set(word.charAt(i));
+
+    if (sorted)
+      putSorted(word, annotation);
+    else
+      traversePrefix(word, annotation);
+  }
+
+  public FSM build() {
+    if (sorted)
+      registerPath(0);
+    int start = registry.add(root);
+
+    if (alphabet.cardinality() > Character.MAX_VALUE)
+      throw new IllegalStateException("Alphabet of " + alphabet.cardinality() + " chars leaves no code for other chars");
+
+    // code 0 is reserved for chars outside the alphabet
+    char[] codes = new char[Character.MAX_VALUE + 1];
+    int symbol = 1;
+    for (int c = alphabet.nextSetBit(0); c >= 0; c = alphabet.nextSetBit(c + 1))
+      codes[c] = (char) symbol++;
+
+    // transitions are packed into a single int when both the codes and the state offsets fit, and take two otherwise
+    int[] offsets = new int[registry.count()];
+    boolean wide = symbol > 256;
+    long size = registry.apply(start, new Registry.OffsetCalculator(registry, offsets, codes, wide ? 2 : 1)).offset;
+    if (!wide && size > 1 << 24) {
+      wide = true;
+      size = registry.apply(start, new Registry.OffsetCalculator(registry, offsets, codes, 2)).offset;
+    }
+    if (size > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("Automaton of " + size + " ints does not fit into an array");
+
+    int[] buffer = new int[(int) size];
+    registry.apply(start, new Registry.BinaryWriter(registry, offsets, buffer, codes, wide));
+
+    if (wide)
+      return new FSM(buffer, codes);
+
+    byte[] charMap = new byte[Character.MAX_VALUE + 1];
+    for (int c = 0; c < codes.length; c++)
+      charMap[c] = (byte) codes[c];
+    return new FSM(buffer, charMap);
+  }
+
+  /**
+   * Adds the word below the root, copying the registered states along its prefix into the path: the states that more
+   * than one transition leads to (and all states after them) are cloned, and the others are unregistered while they
+   * change.  The path is then registered bottom up, without recursing once per char, and the unregistered states are
+   * released once no transition leads to them.
+   */
+  private void traversePrefix(CharSequence word, int annotation) {
+    ensurePath(word.length());
+
+    State state = root;
+    int position = 0;
+    int depth = 0;
+    int unregisteredCount = 0;
+    boolean postConfluence = false;
+
+    for (int slot = state.transition(word, position); slot >= 0; slot = state.transition(word, ++position)) {
+      int child = state.child(slot);
+
+      if (registry.incomingLinks(child) > 1)
+        postConfluence = true;
+
+      State copy = path[depth + 1];
+      registry.read(child, copy);
+      if (postConfluence) {
+        for (int i = 0; i < copy.size(); i++)
+          registry.addLink(copy.child(i));
+      } else {
+        registry.remove(child); // the copy takes over the links of the state, which is no longer reachable
+        unregistered[unregisteredCount++] = child;
+      }
+
+      slots[depth++] = slot;
+      state = copy;
+    }
+
+    addSuffix(state, word, position, annotation);
+
+    while (depth > 0) {
+      int child = registry.intern(path[depth]);
+      depth--;
+      relink(path[depth], slots[depth], child);
+    }
+
+    for (int i = 0; i < unregisteredCount; i++)
+      registry.release(unregistered[i]);
+  }
+
+  /**
+   * Adds the rest of the word from the given position as a new chain of states below the given state, registering the
+   * chain from its last state up
+   */
+  private void addSuffix(State state, CharSequence word, int position, int annotation) {
+    if (position == word.length()) {
+      state.annotate(annotation);
+      return;
+    }
+
+    suffix.clear();
+    suffix.annotate(annotation);
+    int child = registry.intern(suffix);
+    for (int i = word.length() - 1; i > position; i--) {
+      suffix.clear();
+      relink(suffix, suffix.addKey(word.charAt(i)), child);
+      child = registry.intern(suffix);
+    }
+    relink(state, state.addKey(word.charAt(position)), child);
+  }
+
+  private void relink(State state, int slot, int child) {
+    if (state.child(slot) != State.NO_CHILD)
+      registry.removeLink(state.child(slot));
+    registry.addLink(child);
+    state.link(slot, child);
+  }
+
+  private void putSorted(CharSequence word, int annotation) {
+    int length = word.length();
+    int prefix = 0;
+    while (prefix < length && prefix < previousLength && word.charAt(prefix) == previous[prefix])
+      prefix++;
+
+    if (prefix < previousLength && (prefix == length || word.charAt(prefix) < previous[prefix]))
+      throw new IllegalArgumentException("Word " + word + " is put after " + new String(previous, 0, previousLength) +
+          ", which sorts after it");
+
+    registerPath(prefix);
+
+    ensurePath(length);
+    for (int i = prefix; i < length; i++) {
+      char c = word.charAt(i);
+      path[i].addKey(c);
+      path[i + 1].clear();
+      previous[i] = c;
+    }
+    path[length].annotate(annotation);
+    previousLength = length;
+  }
+
+  // replaces the states of the path of the previous word below the given depth by their registered equivalents,
+  // deepest first, so that the children of a state are registered before it is
+  private void registerPath(int depth) {
+    for (int i = previousLength; i > depth; i--) {
+      State parent = path[i - 1];
+      parent.link(parent.size() - 1, registry.intern(path[i]));
+    }
+    previousLength = depth;
+  }
+
+  private void ensurePath(int length) {
+    if (length < path.length)
+      return;
+
+    int capacity = Math.max(path.length * 2, length + 1);
+    State[] states = newStates(capacity, path.length);
+    System.arraycopy(path, 0, states, 0, path.length);
+    path = states;
+    if (sorted)
+      previous = copyOf(previous, capacity);
+    else {
+      slots = copyOf(slots, capacity);
+      unregistered = copyOf(unregistered, capacity);
+    }
+  }
+
+  private static State[] newStates(int length, int from) {
+    State[] states = new State[length];
+    for (int i = from; i < length; i++)
+      states[i] = new State();
+    return states;
+  }
+}
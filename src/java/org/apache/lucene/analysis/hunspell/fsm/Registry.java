@@ -0,0 +1,500 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.BitSet;
+import static java.util.Arrays.copyOf;
+import static org.apache.lucene.analysis.hunspell.fsm.FSM.rangeValue;
+import static org.apache.lucene.analysis.hunspell.fsm.FSM.stateValue;
+import static org.apache.lucene.analysis.hunspell.fsm.FSM.transitionValue;
+
+/**
+ * The registered states of an automaton being built, which are identified by ints and kept in pooled int arrays rather
+ * than as objects.  The states are looked up by their signature, that is their annotations and their transitions to
+ * other registered states, in an open addressing table of their ints.
+ */
+class Registry {
+  private static final int DENSE_TRANSITIONS = 8;
+
+  private static final int EMPTY = -1;
+  private static final int REMOVED = -2;
+
+  // states are kept in pages, which are added as needed rather than growing a single array by copying it; a state
+  // never spans pages, and its start is its position over all pages
+  private static final int PAGE_BITS = 18;
+  static final int PAGE_SIZE = 1 << PAGE_BITS;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  // state: annotationCount, transitionCount, annotation*, (key, child)*
+  private int[][] pages = new int[1][PAGE_SIZE];
+  private int dataSize = 0;
+  private long liveInts = 0;
+  private long releasedInts = 0;
+
+  // by state: start of the state in the data, and its hash code
+  private int[] starts = new int[256];
+  private int[] hashes = new int[256];
+  private int count = 0;
+
+  // released states, whose ints identify new states, and by slot length the first of the released slots where a new
+  // state of that slot length can start, each of which holds the start of the next
+  private int[] released = new int[16];
+  private int releasedCount = 0;
+  private int[] releasedStarts = new int[0];
+
+  // by state, only when counting links: the number of transitions leading to the state
+  private int[] incomingLinks;
+
+  private int[] table = newTable(1024);
+  private int used = 0; // slots holding a state or a removed state
+  private int live = 0;
+
+  /**
+   * @param countLinks whether to count the transitions leading to every state, for {@link #incomingLinks(int)}
+   */
+  Registry(boolean countLinks) {
+    if (countLinks)
+      incomingLinks = new int[starts.length];
+  }
+
+  /**
+   * Returns the registered state equal to the given one, registering a copy of it if there is none.  When counting
+   * links, the links of the given state are taken over by the copy, or dropped if an equal state was registered.
+   */
+  public int intern(State state) {
+    int hash = state.signatureHash();
+    int mask = table.length - 1;
+    int slot = mix(hash) & mask;
+    int removed = -1;
+
+    for (int id = table[slot]; id != EMPTY; id = table[slot = (slot + 1) & mask]) {
+      if (id == REMOVED) {
+        if (removed < 0)
+          removed = slot;
+      } else if (hashes[id] == hash && equals(id, state)) {
+        if (incomingLinks != null) {
+          for (int i = 0; i < state.size(); i++)
+            incomingLinks[state.child(i)]--;
+        }
+        return id;
+      }
+    }
+
+    int id = add(state);
+    hashes[id] = hash;
+
+    if (removed >= 0)
+      slot = removed;
+    else
+      used++;
+    table[slot] = id;
+    live++;
+
+    if (used * 4 > table.length * 3)
+      rehash();
+
+    return id;
+  }
+
+  /**
+   * Copies the given state into the pool without registering it, so that it is never returned by {@link #intern}
+   */
+  public int add(State state) {
+    int annotationCount = state.annotationCount();
+    int size = state.size();
+
+    if (releasedCount == 0 && count == starts.length) {
+      int capacity = count + (count >> 1);
+      starts = copyOf(starts, capacity);
+      hashes = copyOf(hashes, capacity);
+      if (incomingLinks != null)
+        incomingLinks = copyOf(incomingLinks, capacity);
+    }
+    int length = 2 + annotationCount + size * 2;
+    if (length > PAGE_SIZE)
+      throw new IllegalStateException("State of " + annotationCount + " annotations and " + size + " transitions");
+    length = slotLength(length);
+
+    int start;
+    if (length < releasedStarts.length && releasedStarts[length] >= 0) {
+      start = releasedStarts[length];
+      releasedStarts[length] = pages[start >>> PAGE_BITS][start & PAGE_MASK];
+      releasedInts -= length;
+    } else {
+      if ((dataSize & PAGE_MASK) + length > PAGE_SIZE)
+        dataSize = (dataSize | PAGE_MASK) + 1; // starts the state on the next page
+      int page = dataSize >>> PAGE_BITS;
+      if (page == pages.length)
+        pages = copyOf(pages, page * 2);
+      if (pages[page] == null)
+        pages[page] = new int[PAGE_SIZE];
+      start = dataSize;
+      dataSize += length;
+    }
+
+    int id = releasedCount > 0 ? released[--releasedCount] : count++;
+    starts[id] = start;
+    if (incomingLinks != null)
+      incomingLinks[id] = 0;
+
+    int[] data = pages[start >>> PAGE_BITS];
+    int position = start & PAGE_MASK;
+    data[position++] = annotationCount;
+    data[position++] = size;
+    for (int i = 0; i < annotationCount; i++)
+      data[position++] = state.annotation(i);
+    for (int i = 0; i < size; i++) {
+      data[position++] = state.key(i);
+      data[position++] = state.child(i);
+    }
+    liveInts += length;
+
+    return id;
+  }
+
+  /**
+   * Unregisters the given state, so that it is no longer returned by {@link #intern}.  Its ints stay in the pool until
+   * it is {@link #release released}.
+   */
+  public void remove(int id) {
+    int mask = table.length - 1;
+    for (int slot = mix(hashes[id]) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+      if (table[slot] == id) {
+        table[slot] = REMOVED;
+        live--;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Frees an unregistered state that no transition leads to any more, so that its int identifies the next state added
+   * and its slot holds the next state of the same slot length.  The pages are compacted once they hold more ints of
+   * released states than of other states.
+   */
+  public void release(int id) {
+    int length = length(id);
+    liveInts -= length;
+    releasedInts += length;
+
+    if (length >= releasedStarts.length) {
+      int previous = releasedStarts.length;
+      releasedStarts = copyOf(releasedStarts, Math.max(length + 1, previous * 2));
+      Arrays.fill(releasedStarts, previous, releasedStarts.length, -1);
+    }
+    pages[starts[id] >>> PAGE_BITS][starts[id] & PAGE_MASK] = releasedStarts[length];
+    releasedStarts[length] = starts[id];
+    starts[id] = -1;
+
+    if (releasedCount == released.length)
+      released = copyOf(released, releasedCount * 2);
+    released[releasedCount++] = id;
+
+    if (releasedInts >= PAGE_SIZE && releasedInts > liveInts)
+      compact();
+  }
+
+  /**
+   * Copies the given registered state into a State object, to build a changed state from it
+   */
+  public void read(int id, State into) {
+    int[] data = pages[starts[id] >>> PAGE_BITS];
+    int position = starts[id] & PAGE_MASK;
+    int annotationCount = data[position++];
+    int size = data[position++];
+
+    into.clear();
+    for (int i = 0; i < annotationCount; i++)
+      into.appendAnnotation(data[position++]);
+    for (int i = 0; i < size; i++, position += 2)
+      into.append((char) data[position], data[position + 1]);
+  }
+
+  public int incomingLinks(int id) {
+    return incomingLinks[id];
+  }
+
+  public void addLink(int id) {
+    incomingLinks[id]++;
+  }
+
+  public void removeLink(int id) {
+    incomingLinks[id]--;
+  }
+
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Returns the number of ints the pool spans, counting the ints of released states that are not reused yet and the
+   * ends of pages that the next state did not fit into
+   */
+  int poolSize() {
+    return dataSize;
+  }
+
+  /**
+   * Returns the number of ints of the states that are not released
+   */
+  long liveSize() {
+    return liveInts;
+  }
+
+  public int annotationCount(int id) {
+    return pages[starts[id] >>> PAGE_BITS][starts[id] & PAGE_MASK];
+  }
+
+  public int annotation(int id, int index) {
+    return pages[starts[id] >>> PAGE_BITS][(starts[id] & PAGE_MASK) + 2 + index];
+  }
+
+  public int size(int id) {
+    return pages[starts[id] >>> PAGE_BITS][(starts[id] & PAGE_MASK) + 1];
+  }
+
+  public char key(int id, int slot) {
+    int[] data = pages[starts[id] >>> PAGE_BITS];
+    int start = starts[id] & PAGE_MASK;
+    return (char) data[start + 2 + data[start] + slot * 2];
+  }
+
+  public int child(int id, int slot) {
+    int[] data = pages[starts[id] >>> PAGE_BITS];
+    int start = starts[id] & PAGE_MASK;
+    return data[start + 3 + data[start] + slot * 2];
+  }
+
+  interface Visitor {
+    void visit(int state);
+  }
+
+  /**
+   * Passes the given state and every state reachable from it to the visitor once, depth first and parents before their
+   * children, using an explicit stack so that no automaton is too deep for the thread stack
+   */
+  public <T extends Visitor> T apply(int root, T visitor) {
+    BitSet visited = new BitSet(count);
+
+    int[] stack = new int[16];
+    stack[0] = root;
+    int size = 1;
+
+    while (size > 0) {
+      int state = stack[--size];
+      if (visited.get(state))
+        continue;
+
+      visited.set(state);
+
+      visitor.visit(state);
+
+      // pushed last to first, so that the children are visited in the order of their keys
+      int transitions = size(state);
+      if (size + transitions > stack.length)
+        stack = copyOf(stack, Math.max(stack.length * 2, size + transitions));
+      for (int i = transitions - 1; i >= 0; i--) {
+        if (!visited.get(child(state, i)))
+          stack[size++] = child(state, i);
+      }
+    }
+
+    return visitor;
+  }
+
+  static class BinaryWriter implements Visitor {
+    Registry registry;
+    int[] offsets;
+    int[] buffer;
+    char[] codes;
+    boolean wide;
+
+    BinaryWriter(Registry registry, int[] offsets, int[] buffer, char[] codes, boolean wide) {
+      this.registry = registry;
+      this.offsets = offsets;
+      this.buffer = buffer;
+      this.codes = codes;
+      this.wide = wide;
+    }
+
+    public void visit(int state) {
+      int offset = offsets[state];
+      int size = registry.size(state);
+      int slots = registry.denseSlots(state, codes, wide ? 2 : 1);
+
+      // the header of a state holds 15 bits of annotation count and 16 bits of transition count
+      if (registry.annotationCount(state) > 0x7FFF || size > 0xFFFF)
+        throw new IllegalStateException("State of " + registry.annotationCount(state) + " annotations and " + size +
+            " transitions does not fit into the automaton");
+
+      buffer[offset++] = stateValue(registry.annotationCount(state), size, slots > 0);
+      if (slots > 0) {
+        int firstKey = codes[registry.key(state, 0)];
+        buffer[offset++] = rangeValue(firstKey, slots);
+        for (int i = 0; i < size; i++)
+          buffer[offset + codes[registry.key(state, i)] - firstKey] = offsets[registry.child(state, i)];
+        offset += slots;
+      } else {
+        for (int i = 0; i < size; i++) {
+          if (wide) {
+            buffer[offset++] = codes[registry.key(state, i)];
+            buffer[offset++] = offsets[registry.child(state, i)];
+          } else
+            buffer[offset++] = transitionValue(offsets[registry.child(state, i)], codes[registry.key(state, i)]);
+        }
+      }
+      for (int i = 0; i < registry.annotationCount(state); i++)
+        buffer[offset++] = registry.annotation(state, i);
+    }
+  }
+
+  static class OffsetCalculator implements Visitor {
+    long offset = 0;
+    Registry registry;
+    int[] offsets;
+    char[] codes;
+    int transitionWidth;
+
+    OffsetCalculator(Registry registry, int[] offsets, char[] codes, int transitionWidth) {
+      this.registry = registry;
+      this.offsets = offsets;
+      this.codes = codes;
+      this.transitionWidth = transitionWidth;
+    }
+
+    public void visit(int state) {
+      offsets[state] = (int) offset;
+
+      int slots = registry.denseSlots(state, codes, transitionWidth);
+      if (slots > 0)
+        offset += 2 + slots + registry.annotationCount(state);
+      else
+        offset += 1 + registry.size(state) * transitionWidth + registry.annotationCount(state);
+    }
+  }
+
+  // states with many transitions are written as a slot for every coded char between their first and last key, so that
+  // a lookup indexes the slot instead of searching the transitions, as long as this takes at most twice the space
+  private int denseSlots(int state, char[] codes, int transitionWidth) {
+    int size = size(state);
+    if (size < DENSE_TRANSITIONS)
+      return 0;
+
+    int slots = codes[key(state, size - 1)] - codes[key(state, 0)] + 1;
+    return 1 + slots <= 2 * size * transitionWidth ? slots : 0;
+  }
+
+  // moves the states down over the ints of released states that were not reused, in the order of their starts, so that
+  // a state never overwrites one that has not been moved yet, and drops the pages left empty
+  private void compact() {
+    long[] order = new long[count - releasedCount];
+    int n = 0;
+    for (int id = 0; id < count; id++) {
+      if (starts[id] >= 0)
+        order[n++] = (long) starts[id] << 32 | id;
+    }
+    Arrays.sort(order);
+
+    int position = 0;
+    for (long entry : order) {
+      int id = (int) entry;
+      int length = length(id);
+      if ((position & PAGE_MASK) + length > PAGE_SIZE)
+        position = (position | PAGE_MASK) + 1;
+      System.arraycopy(pages[starts[id] >>> PAGE_BITS], starts[id] & PAGE_MASK, pages[position >>> PAGE_BITS],
+          position & PAGE_MASK, length);
+      starts[id] = position;
+      position += length;
+    }
+
+    for (int page = (position >>> PAGE_BITS) + 1; page < pages.length; page++)
+      pages[page] = null;
+    dataSize = position;
+    releasedInts = 0;
+    Arrays.fill(releasedStarts, -1);
+  }
+
+  // the number of ints a state takes in the pool
+  private int length(int id) {
+    int[] data = pages[starts[id] >>> PAGE_BITS];
+    int start = starts[id] & PAGE_MASK;
+    return slotLength(2 + data[start] + data[start + 1] * 2);
+  }
+
+  // states of more than 16 ints get a slot rounded up to a quarter of the power of two below their length, so that a
+  // state that grows by an annotation or a transition each time a word is put mostly fits into the slot it was released
+  // from, instead of leaving released slots of every length behind
+  private static int slotLength(int length) {
+    if (length <= 16)
+      return length;
+    int step = Integer.highestOneBit(length) >> 2;
+    return (length + step - 1) & -step;
+  }
+
+  private boolean equals(int id, State state) {
+    int[] data = pages[starts[id] >>> PAGE_BITS];
+    int start = starts[id] & PAGE_MASK;
+    int annotationCount = data[start];
+    int size = data[start + 1];
+    if (annotationCount != state.annotationCount() || size != state.size())
+      return false;
+
+    int position = start + 2;
+    for (int i = 0; i < annotationCount; i++) {
+      if (data[position++] != state.annotation(i))
+        return false;
+    }
+    for (int i = 0; i < size; i++, position += 2) {
+      if (data[position] != state.key(i) || data[position + 1] != state.child(i))
+        return false;
+    }
+    return true;
+  }
+
+  private void rehash() {
+    int length = table.length;
+    while (live * 2 > length)
+      length *= 2;
+
+    int[] table = newTable(length);
+    int mask = length - 1;
+    for (int id : this.table) {
+      if (id < 0)
+        continue;
+      int slot = mix(hashes[id]) & mask;
+      while (table[slot] != EMPTY)
+        slot = (slot + 1) & mask;
+      table[slot] = id;
+    }
+
+    this.table = table;
+    used = live;
+  }
+
+  private static int[] newTable(int length) {
+    int[] table = new int[length];
+    Arrays.fill(table, EMPTY);
+    return table;
+  }
+
+  private static int mix(int hash) {
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+}
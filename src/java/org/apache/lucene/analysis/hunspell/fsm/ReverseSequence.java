@@ -0,0 +1,46 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+public final class ReverseSequence implements CharSequence {
+  public static CharSequence reverse(CharSequence sequence) {
+    return new ReverseSequence(sequence);
+  }
+
+  private final CharSequence sequence;
+
+  public ReverseSequence(CharSequence sequence) {
+    this.sequence = sequence;
+  }
+
+  public int length() {
+    return sequence.length();
+  }
+
+  public char charAt(int index) {
+    return sequence.charAt(position(index));
+  }
+
+  public CharSequence subSequence(int start, int end) {
+    return sequence.subSequence(position(start), position(end));
+  }
+
+  private int position(int pos) {
+    return sequence.length() - pos - 1;
+  }
+}
@@ -0,0 +1,147 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static java.util.Arrays.binarySearch;
+import static java.util.Arrays.copyOf;
+
+/**
+ * A state that is still being built.  Once it is complete it is registered in the {@link Registry}, which copies it
+ * into its pooled arrays and identifies it by an int from then on, so that a builder only keeps State objects for the
+ * states on the path of the word being put and reuses them for the next word.  Transitions lead to registered states.
+ */
+class State {
+  static final int NO_CHILD = -1;
+
+  private int[] annotations = new int[1];
+  private int annotationCount = 0;
+  private char[] keys = new char[2];
+  private int[] children = new int[2];
+  private int size = 0;
+
+  /**
+   * Removes all transitions and annotations, so that the object can be reused for another state
+   */
+  public void clear() {
+    annotationCount = 0;
+    size = 0;
+  }
+
+  public void annotate(int annotation) {
+    int n = binarySearch(annotations, 0, annotationCount, annotation);
+
+    if (n >= 0)
+      return;
+
+    if (annotationCount == annotations.length)
+      annotations = copyOf(annotations, annotationCount * 2);
+
+    n = -n - 1;
+    System.arraycopy(annotations, n, annotations, n + 1, annotationCount - n);
+    annotations[n] = annotation;
+    annotationCount++;
+  }
+
+  /**
+   * Adds an annotation after all annotations added so far, which must be lower
+   */
+  void appendAnnotation(int annotation) {
+    if (annotationCount == annotations.length)
+      annotations = copyOf(annotations, annotationCount * 2);
+
+    annotations[annotationCount++] = annotation;
+  }
+
+  /**
+   * Adds a transition for the given key, which does not lead to any state until it is linked
+   *
+   * @return slot of the transition
+   */
+  public int addKey(char key) {
+    int insertionPoint = -binarySearch(keys, 0, size, key) - 1;
+
+    if (size == keys.length) {
+      keys = copyOf(keys, size * 2);
+      children = copyOf(children, size * 2);
+    }
+
+    System.arraycopy(keys, insertionPoint, keys, insertionPoint + 1, size - insertionPoint);
+    System.arraycopy(children, insertionPoint, children, insertionPoint + 1, size - insertionPoint);
+    keys[insertionPoint] = key;
+    children[insertionPoint] = NO_CHILD;
+    size++;
+
+    return insertionPoint;
+  }
+
+  /**
+   * Adds a transition that is already linked, after all transitions added so far, whose keys must be lower
+   */
+  void append(char key, int child) {
+    if (size == keys.length) {
+      keys = copyOf(keys, size * 2);
+      children = copyOf(children, size * 2);
+    }
+
+    keys[size] = key;
+    children[size++] = child;
+  }
+
+  public void link(int slot, int child) {
+    children[slot] = child;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int transition(CharSequence word, int position) {
+    return position == word.length() ? -1 : binarySearch(keys, 0, size, word.charAt(position));
+  }
+
+  public char key(int slot) {
+    return keys[slot];
+  }
+
+  public int child(int slot) {
+    return children[slot];
+  }
+
+  public int annotationCount() {
+    return annotationCount;
+  }
+
+  public int annotation(int index) {
+    return annotations[index];
+  }
+
+  /**
+   * Hash code of the state as computed by the {@link Registry}, over the annotations, the registered children and the
+   * keys.  Children are identified by their int, so this never descends into them.
+   */
+  int signatureHash() {
+    int hash = 1;
+    for (int i = 0; i < annotationCount; i++)
+      hash = hash * 31 + annotations[i];
+    for (int i = 0; i < size; i++)
+      hash = hash * 31 + children[i];
+    for (int i = 0; i < size; i++)
+      hash = hash * 31 + keys[i];
+    return hash;
+  }
+}
@@ -17,6 +17,7 @@ package org.apache.solr.analysis;
  * limitations under the License.
  */
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,16 +25,28 @@ import java.util.List;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.hunspell.HunspellDictionary;
 import org.apache.lucene.analysis.hunspell.HunspellStemFilter;
+import org.apache.lucene.analysis.hunspell.HunspellStemmer;
 import org.apache.solr.common.ResourceLoader;
+import org.apache.solr.core.SolrResourceLoader;
 import org.apache.solr.util.plugin.ResourceLoaderAware;
 
 /**
  * TokenFilterFactory that creates instances of {@link org.apache.lucene.analysis.hunspell.HunspellStemFilter}.  Provides
- * configuration for the location of the hunspell dictionary and affix files
+ * configuration for the location of the hunspell dictionary and affix files, whether the words should be compiled
+ * into an automaton ({@code automaton="true"}) to reduce memory usage and on how many threads the dictionary files are
+ * read ({@code threads="4"}).  Alternatively the location of a dictionary compiled with
+ * {@link org.apache.lucene.analysis.hunspell.HunspellDictionaryCompiler} can be configured
+ * ({@code compiled="nl_NL.hunspell"}), which is memory mapped instead of being parsed.  The stems of the most recently
+ * seen tokens can be cached per filter ({@code cacheSize="10000"}), and the stems of frequent tokens in a cache shared by
+ * all filters and threads ({@code sharedCacheSize="100000"}).  Tokens that cannot have stems can be passed through
+ * without being stemmed by a Bloom filter over all forms of the words ({@code formFilter="true"}), or all forms can be
+ * expanded into a full form lexicon that the stems are looked up in ({@code lexicon="true"})
  */
 public class HunspellStemFilterFactory extends BaseTokenFilterFactory implements ResourceLoaderAware {
   
   private HunspellDictionary dictionary;
+  private HunspellStemmer stemmer; // shared by all the filters created, as it is thread safe
+  private int cacheSize;
 
   /**
    * Loads the hunspell dictionary and affix files defined in the configuration
@@ -41,8 +54,23 @@ public class HunspellStemFilterFactory extends BaseTokenFilterFactory implements
    * @param loader ResourceLoader used to load the files
    */
   public void inform(ResourceLoader loader) {
+    cacheSize = getInt("cacheSize", 0);
+
+    String compiledFile = args.get("compiled");
+    if (compiledFile != null) {
+      try {
+        this.dictionary = HunspellDictionary.open(resolveFile(loader, compiledFile));
+      } catch (Exception e) {
+        throw new RuntimeException("Unable to open compiled hunspell data! [compiled=" + compiledFile + "]", e);
+      }
+      initStemmer();
+      return;
+    }
+
     String dictionaryFiles[] = args.get("dictionary").split(",");
     String affixFile = args.get("affix");
+    boolean automaton = getBoolean("automaton", false);
+    int threads = getInt("threads", 1);
 
     try {
       List<InputStream> dictionaries = new ArrayList<InputStream>();
@@ -50,10 +78,40 @@ public class HunspellStemFilterFactory extends BaseTokenFilterFactory implements
         dictionaries.add(loader.openResource(file));
       this.dictionary = new HunspellDictionary(
           loader.openResource(affixFile),
-          dictionaries);
+          dictionaries,
+          automaton,
+          threads);
     } catch (Exception e) {
       throw new RuntimeException("Unable to load hunspell data! [dictionary=" + args.get("dictionary") + ",affix=" + affixFile + "]", e);
     }
+    initStemmer();
+  }
+
+  /**
+   * Creates the stemmer shared by all the filters, enabling the dictionary's shared stem cache and form filter and the
+   * stemmer's full form lexicon if configured
+   */
+  private void initStemmer() {
+    dictionary.setStemCacheSize(getInt("sharedCacheSize", 0));
+    if (getBoolean("formFilter", false)) {
+      dictionary.buildFormFilter(0.01);
+    }
+    this.stemmer = new HunspellStemmer(dictionary, getBoolean("lexicon", false), getInt("threads", 1));
+  }
+
+  /**
+   * Resolves the given path against the configuration directory if it is relative and the loader knows the directory
+   *
+   * @param loader ResourceLoader used to load the files
+   * @param path Path of the file to resolve
+   * @return Resolved file
+   */
+  private File resolveFile(ResourceLoader loader, String path) {
+    File file = new File(path);
+    if (!file.isAbsolute() && loader instanceof SolrResourceLoader) {
+      file = new File(((SolrResourceLoader) loader).getConfigDir(), path);
+    }
+    return file;
   }
 
   /**
@@ -64,6 +122,6 @@ public class HunspellStemFilterFactory extends BaseTokenFilterFactory implements
    * @return HunspellStemFilter that filters the TokenStream 
    */
   public TokenStream create(TokenStream tokenStream) {
-    return new HunspellStemFilter(tokenStream, dictionary);
+    return new HunspellStemFilter(tokenStream, stemmer, true, cacheSize);
   }
 }
@@ -0,0 +1,76 @@
+package org.apache.lucene.analysis.hunspell;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link org.apache.lucene.analysis.hunspell.HunspellAffix}
+ */
+public class HunspellAffixTest {
+
+  /**
+   * Pass condition: suffix conditions are checked against the end of the word only, with literals, any char, and
+   *                 positive and negative char classes
+   */
+  @Test
+  public void testCheckCondition_suffix() {
+    HunspellAffix affix = new HunspellAffix();
+    affix.setCondition("[^aeiou]y", ".*[^aeiou]y");
+
+    assertTrue(affix.checkCondition("happy".toCharArray(), 0, 5));
+    assertFalse(affix.checkCondition("buoy".toCharArray(), 0, 4));
+    assertFalse(affix.checkCondition("y".toCharArray(), 0, 1));
+    assertTrue(affix.checkCondition("xhappyx".toCharArray(), 1, 5));
+    assertTrue(affix.checkCondition("happy"));
+
+    affix.setCondition(".", ".*.");
+    assertTrue(affix.checkCondition("a".toCharArray(), 0, 1));
+    assertFalse(affix.checkCondition("a".toCharArray(), 0, 0));
+  }
+
+  /**
+   * Pass condition: prefix conditions are checked against the start of the word only
+   */
+  @Test
+  public void testCheckCondition_prefix() {
+    HunspellAffix affix = new HunspellAffix();
+    affix.setCondition("[aeiou]n", "[aeiou]n.*");
+
+    assertTrue(affix.checkCondition("undo".toCharArray(), 0, 4));
+    assertFalse(affix.checkCondition("sun".toCharArray(), 0, 3));
+    assertFalse(affix.checkCondition("xundo".toCharArray(), 0, 5));
+    assertTrue(affix.checkCondition("xundo".toCharArray(), 1, 4));
+  }
+
+  /**
+   * Pass condition: conditions agree with their regular expressions, including conditions using regular expression
+   *                 syntax that is handed to the regular expression
+   */
+  @Test
+  public void testCheckCondition_matchesRegex() {
+    String conditions[] = {".", "e", "[^e]", "[aeiou]y", "[^aeiou][^s]", "[a-c]", "ab|c", "[^]"};
+    String words[] = {"", "a", "b", "e", "ey", "ay", "ty", "ees", "abc", "ab", "c", "-", "ts", "aeb"};
+
+    HunspellAffix affix = new HunspellAffix();
+    for (String condition : conditions) {
+      for (String pattern : new String[] {".*" + condition, condition + ".*"}) {
+        Pattern regex;
+        try {
+          regex = Pattern.compile(pattern);
+        } catch (RuntimeException e) {
+          continue;
+        }
+        affix.setCondition(condition, pattern);
+        for (String word : words) {
+          assertEquals(pattern + " " + word, regex.matcher(word).matches(),
+              affix.checkCondition(word.toCharArray(), 0, word.length()));
+        }
+      }
+    }
+  }
+}
@@ -2,11 +2,20 @@ package org.apache.lucene.analysis.hunspell;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link org.apache.lucene.analysis.hunspell.HunspellDictionary}
@@ -35,4 +44,281 @@ public class HunspellDictionaryTest {
     affixStream.close();
     dictStream.close();
   }
+
+  /**
+   * Pass condition: en_US affix and dict files are loaded into an automaton without error, finding the same words as
+   *                 the default storage and nothing for words and prefixes of words that are not in the dictionary
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_loadEnUSDictAutomaton() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, Arrays.asList(dictStream), true);
+
+    assertEquals(1, dictionary.lookupWord(new char[]{'d', 'r', 'i', 'n', 'k'}, 0, 5).size());
+    assertEquals(1, dictionary.lookupWord(new char[]{'x', 'd', 'r', 'i', 'n', 'k', 'x'}, 1, 5).size());
+    assertNull(dictionary.lookupWord(new char[]{'d', 'r', 'i', 'n'}, 0, 4));
+    assertNull(dictionary.lookupWord(new char[]{'d', 'r', 'i', 'n', 'k', 'z'}, 0, 6));
+    assertNull(dictionary.lookupWord(new char[]{'\u4e2d'}, 0, 1));
+
+    affixStream.close();
+    dictStream.close();
+  }
+
+  /**
+   * Pass condition: en_US affix and dict files are compiled and the compiled file is opened without error, holding the
+   *                 same suffixes, prefixes and words as the text files
+   * @throws IOException Can be thrown while reading from the aff and dic files or the compiled file
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_compileEnUSDict() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+
+    File compiled = File.createTempFile("en_US", ".hunspell");
+    compiled.deleteOnExit();
+    HunspellDictionaryCompiler.compile(affixStream, Arrays.asList(dictStream), compiled);
+
+    affixStream.close();
+    dictStream.close();
+
+    HunspellDictionary dictionary = HunspellDictionary.open(compiled);
+
+    assertEquals(2, dictionary.lookupSuffix(new char[]{'i', 'n', 'g', 's'}, 0, 4).size());
+    assertEquals(1, dictionary.lookupPrefix(new char[]{'i', 'n'}, 0, 2).size());
+    assertEquals(1, dictionary.lookupWord(new char[]{'d', 'r', 'i', 'n', 'k'}, 0, 5).size());
+    assertNull(dictionary.lookupWord(new char[]{'d', 'r', 'i', 'n'}, 0, 4));
+  }
+
+  /**
+   * Pass condition: words with identical flags, such as 'drinkable' and 'abet' in en_US, share the same HunspellWord
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_sharedFlagSets() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, dictStream);
+
+    assertSame(
+        dictionary.lookupWord("drinkable".toCharArray(), 0, 9).get(0),
+        dictionary.lookupWord("abet".toCharArray(), 0, 4).get(0));
+
+    affixStream.close();
+    dictStream.close();
+  }
+
+  /**
+   * Pass condition: dictionary lines with CRLF line endings and morphological fields after a tab are read into the
+   *                 plain words with their flags
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_morphFieldsAndLineEndings() throws IOException, ParseException {
+    InputStream affixStream = new ByteArrayInputStream("SET UTF-8\nSFX A Y 1\nSFX A 0 s .\n".getBytes("UTF-8"));
+    InputStream dictStream = new ByteArrayInputStream("3\r\nfoo/A\tpo:noun\r\nbar\tst:bar/x\r\nbaz/A".getBytes("UTF-8"));
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, dictStream);
+
+    assertTrue(dictionary.lookupWord("foo".toCharArray(), 0, 3).get(0).hasFlag('A'));
+    assertEquals(1, dictionary.lookupWord("bar".toCharArray(), 0, 3).size());
+    assertTrue(dictionary.lookupWord("baz".toCharArray(), 0, 3).get(0).hasFlag('A'));
+    assertNull(dictionary.lookupWord("foo/A".toCharArray(), 0, 5));
+  }
+
+  /**
+   * Pass condition: words over alphabets of 200 chars, whose codes do not fit into a signed byte, and of 300 chars,
+   *                 which need wide transitions, are all found in an automaton, and the automaton enumerates them all
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_largeAlphabetAutomaton() throws IOException, ParseException {
+    for (int alphabetSize : new int[] { 200, 300 }) {
+      StringBuilder dic = new StringBuilder().append(alphabetSize).append('\n');
+      for (int i = 0; i < alphabetSize; i++) {
+        dic.append('\u4e00').append((char) ('\u4e00' + i)).append('\n');
+      }
+      InputStream affixStream = new ByteArrayInputStream("SET UTF-8\n".getBytes("UTF-8"));
+      InputStream dictStream = new ByteArrayInputStream(dic.toString().getBytes("UTF-8"));
+
+      HunspellDictionary dictionary = new HunspellDictionary(affixStream, Arrays.asList(dictStream), true);
+
+      for (int i = 0; i < alphabetSize; i++) {
+        char word[] = { '\u4e00', (char) ('\u4e00' + i) };
+        assertEquals(1, dictionary.lookupWord(word, 0, 2).size());
+      }
+      assertNull(dictionary.lookupWord(new char[] { '\u4e00', (char) ('\u4e00' + alphabetSize) }, 0, 2));
+      assertNull(dictionary.lookupWord(new char[] { '\u4e01' }, 0, 1));
+
+      final int count[] = new int[1];
+      dictionary.getWordStore().visit(new WordStore.Visitor() {
+        public void visit(char word[], int offset, int length, List<HunspellWord> wordForms) {
+          count[0]++;
+        }
+      });
+      assertEquals(alphabetSize, count[0]);
+    }
+  }
+
+  /**
+   * Pass condition: all suffixes of 'drinkings' are found in a single pass, longest append first, and the groups are
+   *                 added after what is already in the list
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_lookupSuffixes() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, dictStream);
+
+    List<List<HunspellAffix>> suffixes = new ArrayList<List<HunspellAffix>>();
+    suffixes.add(null);
+    dictionary.lookupSuffixes("xdrinkingsx".toCharArray(), 1, 9, suffixes);
+
+    assertEquals(3, suffixes.size());
+    assertNull(suffixes.get(0));
+    assertSame(dictionary.lookupSuffix("ings".toCharArray(), 0, 4), suffixes.get(1));
+    assertSame(dictionary.lookupSuffix("s".toCharArray(), 0, 1), suffixes.get(2));
+
+    suffixes.clear();
+    dictionary.lookupSuffixes("drinkx".toCharArray(), 0, 6, suffixes);
+    assertTrue(suffixes.isEmpty());
+
+    affixStream.close();
+    dictStream.close();
+  }
+
+  /**
+   * Pass condition: the prefix of 'inn' is found in a single pass, 'inn' itself not being a prefix, and nothing is
+   *                 found for 'in' or a word starting with chars that no prefix starts with
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_lookupPrefixes() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, dictStream);
+
+    List<List<HunspellAffix>> prefixes = new ArrayList<List<HunspellAffix>>();
+    dictionary.lookupPrefixes("xinnx".toCharArray(), 1, 3, prefixes);
+
+    assertEquals(1, prefixes.size());
+    assertSame(dictionary.lookupPrefix("in".toCharArray(), 0, 2), prefixes.get(0));
+
+    prefixes.clear();
+    dictionary.lookupPrefixes("in".toCharArray(), 0, 2, prefixes);
+    assertTrue(prefixes.isEmpty());
+
+    dictionary.lookupPrefixes("drink".toCharArray(), 0, 5, prefixes);
+    assertTrue(prefixes.isEmpty());
+
+    affixStream.close();
+    dictStream.close();
+  }
+
+  /**
+   * Pass condition: with the shared stem cache enabled, repeated tokens are served from the cache with the same stems,
+   *                 and a token seen once does not evict a token seen several times from a full cache
+   * @throws IOException Can be thrown while reading from the aff and dic files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_sharedStemCache() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, dictStream);
+    dictionary.setStemCacheSize(1);
+    HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+
+    final List<String> stems = new ArrayList<String>();
+    HunspellStemmer.StemSink sink = new HunspellStemmer.StemSink() {
+      public void addStem(char stem[], int length) {
+        stems.add(new String(stem, 0, length));
+      }
+    };
+
+    for (int i = 0; i < 3; i++) {
+      stems.clear();
+      stemmer.stem("drinkable".toCharArray(), 9, sink);
+      assertEquals(Arrays.asList("drinkable", "drink"), stems);
+    }
+    assertEquals(2, dictionary.getStemCacheHits());
+    assertEquals(1, dictionary.getStemCacheMisses());
+
+    stems.clear();
+    stemmer.stem("drinkables".toCharArray(), 10, sink);
+    assertEquals(Arrays.asList("drink"), stems);
+
+    stemmer.stem("drinkable".toCharArray(), 9, sink);
+    assertEquals(3, dictionary.getStemCacheHits());
+    assertEquals(2, dictionary.getStemCacheMisses());
+
+    affixStream.close();
+    dictStream.close();
+  }
+
+  /**
+   * Pass condition: the form filters built over the en_US words held in an automaton and in a compiled file let all
+   *                 forms that had stems before the filter was built through, and reject a word without stems
+   * @throws IOException Can be thrown while reading from the aff and dic files or the compiled file
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testHunspellDictionary_formFilter() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+    File compiled = File.createTempFile("en_US", ".hunspell");
+    compiled.deleteOnExit();
+    HunspellDictionaryCompiler.compile(affixStream, Arrays.asList(dictStream), compiled);
+    affixStream.close();
+    dictStream.close();
+
+    affixStream = getClass().getResourceAsStream("dicts/en_US/en_US.aff");
+    dictStream = getClass().getResourceAsStream("dicts/en_US/en_US.dic");
+    HunspellDictionary automaton = new HunspellDictionary(affixStream, Arrays.asList(dictStream), true);
+    affixStream.close();
+    dictStream.close();
+
+    for (HunspellDictionary dictionary : Arrays.asList(automaton, HunspellDictionary.open(compiled))) {
+      HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+      assertTrue(dictionary.mightHaveStems("xdrinkable".toCharArray(), 0, 10));
+
+      // the words with stems are found before the filter is built, as the stemmer skips the words the filter rejects
+      final List<String> words = new ArrayList<String>(Arrays.asList("drink", "drinks", "drinkable", "drinkables",
+          "undrinkable", "abet", "abets"));
+      dictionary.visitForms(new HunspellDictionary.FormVisitor() {
+        public void visitForm(char form[], int length) {
+          words.add(new String(form, 0, length));
+        }
+      });
+      List<String> stemmed = new ArrayList<String>();
+      for (String word : words) {
+        if (!stemmer.stem(word).isEmpty()) {
+          stemmed.add(word);
+        }
+      }
+      assertTrue(stemmed.size() > words.size() / 2);
+
+      dictionary.buildFormFilter(0.01);
+      assertTrue(dictionary.getFormFilterSize() > 0);
+      for (String word : stemmed) {
+        assertTrue(word, dictionary.mightHaveStems(word.toCharArray(), 0, word.length()));
+      }
+      assertFalse(dictionary.mightHaveStems("xdrinkable".toCharArray(), 0, 10));
+      assertTrue(stemmer.stem("xdrinkable").isEmpty());
+    }
+  }
 }
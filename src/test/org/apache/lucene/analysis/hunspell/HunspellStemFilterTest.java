@@ -70,6 +70,17 @@ public class HunspellStemFilterTest extends BaseTokenStreamTestCase {
         new int[] { 1, 0, 1, 0 });
   }
   
+  public void testDutchCached() throws Exception {
+    HunspellStemmer stemmer = new HunspellStemmer(dutchAnalyzer.dictionary);
+    HunspellStemFilter filter = new HunspellStemFilter(
+        new LowerCaseFilter(new StandardTokenizer(new StringReader("huizen huis huizen xyzzy xyzzy"))), stemmer, true, 2);
+    assertTokenStreamContents(filter,
+        new String[] { "huizen", "huis", "huis", "hui", "huizen", "huis", "xyzzy", "xyzzy" },
+        new int[] { 1, 0, 1, 0, 1, 0, 1, 1 });
+    assertEquals(2, filter.getCacheHits());
+    assertEquals(3, filter.getCacheMisses());
+  }
+  
   String text = "Op grond daarvan proclameert de Algemene Vergadering deze Universele Verklaring van de Rechten van de Mens als het gemeenschappelijk door alle volkeren en alle naties te bereiken ideaal, opdat ieder individu en elk orgaan van de gemeenschap, met deze verklaring voortdurend voor ogen, er naar zal streven door onderwijs en opvoeding de eerbied voor deze rechten en vrijheden te bevorderen, en door vooruitstrevende maatregelen, op nationaal en internationaal terrein, deze rechten algemeen en daadwerkelijk te doen erkennen en toepassen, zowel onder de volkeren van Staten die Lid van de Verenigde Naties zijn, zelf, als onder de volkeren van gebieden, die onder hun jurisdictie staan";
   
   public void testPerformance() throws Exception {
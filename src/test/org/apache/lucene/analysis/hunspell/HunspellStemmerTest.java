@@ -2,12 +2,20 @@ package org.apache.lucene.analysis.hunspell;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link org.apache.lucene.analysis.hunspell.HunspellStemmer}
@@ -115,6 +123,196 @@ public class HunspellStemmerTest {
     assertEquals("hui", stems.get(1).getStemString());
   }
 
+  /**
+   * Pass condition: Stemming with the words compiled into an automaton produces the same stems as the default storage
+   *
+   * @throws IOException Can be thrown while reading the files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testStem_automatonNlNL() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/nl_NL/nl_NL.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/nl_NL/nl_NL.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, Arrays.asList(dictStream), true);
+
+    affixStream.close();
+    dictStream.close();
+
+    HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+    List<HunspellStemmer.Stem> stems = stemmer.stem("huizen");
+
+    assertEquals(2, stems.size());
+    assertEquals("huizen", stems.get(0).getStemString());
+    assertEquals("huis", stems.get(1).getStemString());
+
+    stems = stemmer.stem("fietsen");
+    assertEquals(2, stems.size());
+    assertEquals("fietsen", stems.get(0).getStemString());
+    assertEquals("fiets", stems.get(1).getStemString());
+  }
+
+  /**
+   * Pass condition: Stemming with the dictionary files read on several threads produces the same stems as reading them
+   *                 on a single thread
+   *
+   * @throws IOException Can be thrown while reading the files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testStem_parallelLoadNlNL() throws IOException, ParseException {
+    InputStream affixStream = getClass().getResourceAsStream("dicts/nl_NL/nl_NL.aff");
+    InputStream dictStream = getClass().getResourceAsStream("dicts/nl_NL/nl_NL.dic");
+
+    HunspellDictionary dictionary = new HunspellDictionary(affixStream, Arrays.asList(dictStream), false, 4);
+
+    affixStream.close();
+    dictStream.close();
+
+    HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+    List<HunspellStemmer.Stem> stems = stemmer.stem("huizen");
+
+    assertEquals(2, stems.size());
+    assertEquals("huizen", stems.get(0).getStemString());
+    assertEquals("huis", stems.get(1).getStemString());
+
+    stems = stemmer.stem("huis");
+    assertEquals(2, stems.size());
+    assertEquals("huis", stems.get(0).getStemString());
+    assertEquals("hui", stems.get(1).getStemString());
+  }
+
+  /**
+   * Pass condition: with long flags, 'Ab' and 'Ba' are distinct flags, so 'fooer' is not stemmed to 'foo', which only
+   *                 has the 'Ab' flag, while 'foos' is
+   *
+   * @throws IOException Can be thrown while reading the files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testStem_longFlags() throws IOException, ParseException {
+    String affix = "SET UTF-8\nFLAG long\nSFX Ab Y 1\nSFX Ab 0 s .\nSFX Ba Y 1\nSFX Ba 0 er .\n";
+    InputStream affixStream = new ByteArrayInputStream(affix.getBytes("UTF-8"));
+    InputStream dictStream = new ByteArrayInputStream("1\nfoo/Ab\n".getBytes("UTF-8"));
+
+    HunspellStemmer stemmer = new HunspellStemmer(new HunspellDictionary(affixStream, dictStream));
+
+    List<HunspellStemmer.Stem> stems = stemmer.stem("foos");
+    assertEquals(1, stems.size());
+    assertEquals("foo", stems.get(0).getStemString());
+
+    assertEquals(0, stemmer.stem("fooer").size());
+  }
+
+  /**
+   * Pass condition: the stems passed to a StemSink are the same, in the same order, as the stems returned in a list,
+   *                 for words stemmed to themselves, through a single suffix and recursively
+   *
+   * @throws IOException Can be thrown while reading the files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testStem_sinkEnUS() throws IOException, ParseException {
+    HunspellDictionary dictionary = loadDictionary("dicts/en_US/en_US.aff", "dicts/en_US/en_US.dic");
+
+    HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+    final List<String> sinkStems = new ArrayList<String>();
+    HunspellStemmer.StemSink sink = new HunspellStemmer.StemSink() {
+      public void addStem(char stem[], int length) {
+        sinkStems.add(new String(stem, 0, length));
+      }
+    };
+
+    for (String word : new String[] {"drinkable", "drinkables", "remove", "drink", "xyzzy"}) {
+      List<String> listStems = new ArrayList<String>();
+      for (HunspellStemmer.Stem stem : stemmer.stem(word)) {
+        listStems.add(stem.getStemString());
+      }
+
+      sinkStems.clear();
+      stemmer.stem(word.toCharArray(), word.length(), sink);
+      assertEquals(word, listStems, sinkStems);
+    }
+  }
+
+  /**
+   * Pass condition: stemmers answering from a full form lexicon, built on one and on several threads, pass the same
+   *                 stems, in the same order, to a StemSink as a stemmer stripping affixes, for words stemmed to
+   *                 themselves, through a single suffix, recursively and not at all
+   *
+   * @throws IOException Can be thrown while reading the files
+   * @throws ParseException Can be thrown while parsing the files
+   */
+  @Test
+  public void testStem_lexiconEnUS() throws IOException, ParseException {
+    HunspellDictionary dictionary = loadDictionary("dicts/en_US/en_US.aff", "dicts/en_US/en_US.dic");
+
+    HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+    List<HunspellStemmer> lexiconStemmers = Arrays.asList(
+        new HunspellStemmer(dictionary, true),
+        new HunspellStemmer(dictionary, true, 3));
+    final List<String> sinkStems = new ArrayList<String>();
+    HunspellStemmer.StemSink sink = new HunspellStemmer.StemSink() {
+      public void addStem(char stem[], int length) {
+        sinkStems.add(new String(stem, 0, length));
+      }
+    };
+
+    for (String word : new String[] {"drinkable", "drinkables", "remove", "drink", "drinks", "undrinkable", "xyzzy"}) {
+      sinkStems.clear();
+      stemmer.stem(word.toCharArray(), word.length(), sink);
+      List<String> expected = new ArrayList<String>(sinkStems);
+
+      for (HunspellStemmer lexiconStemmer : lexiconStemmers) {
+        sinkStems.clear();
+        lexiconStemmer.stem(word.toCharArray(), word.length(), sink);
+        assertEquals(word, expected, sinkStems);
+      }
+    }
+  }
+
+  /**
+   * Pass condition: a single stemmer shared by several threads finds the same stems for every word as it does when
+   *                 used by one thread
+   *
+   * @throws Exception Can be thrown while reading the files or by the stemming threads
+   */
+  @Test
+  public void testStem_sharedStemmerNlNL() throws Exception {
+    HunspellDictionary dictionary = loadDictionary("dicts/nl_NL/nl_NL.aff", "dicts/nl_NL/nl_NL.dic");
+    final HunspellStemmer stemmer = new HunspellStemmer(dictionary);
+
+    final String words[] = {"huizen", "huis", "fietsen", "fiets", "huisjes", "gebouwen", "lopen", "xyzzy"};
+    final List<String> expected = new ArrayList<String>();
+    for (String word : words) {
+      expected.add(stemStrings(stemmer.stem(word)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+      for (int t = 0; t < 4; t++) {
+        final int offset = t;
+        futures.add(executor.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            for (int i = 0; i < 2000; i++) {
+              int index = (i + offset) % words.length;
+              if (!expected.get(index).equals(stemStrings(stemmer.stem(words[index])))) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   // ================================================= Helper Methods ================================================
 
   /**
@@ -138,4 +336,24 @@ public class HunspellStemmerTest {
     return dictionary;
   }
 
+  /**
+   * Joins the stems and the affixes stripped to get to them into a single String, for comparing stemming results
+   *
+   * @param stems Stems to join
+   * @return String holding the stems and their affixes
+   */
+  private static String stemStrings(List<HunspellStemmer.Stem> stems) {
+    StringBuilder builder = new StringBuilder();
+    for (HunspellStemmer.Stem stem : stems) {
+      builder.append(stem.getStemString()).append(' ');
+      for (HunspellAffix prefix : stem.getPrefixes()) {
+        builder.append(prefix.getAppend()).append('+');
+      }
+      for (HunspellAffix suffix : stem.getSuffixes()) {
+        builder.append('+').append(suffix.getAppend());
+      }
+      builder.append(';');
+    }
+    return builder.toString();
+  }
 }
@@ -0,0 +1,36 @@
+package org.apache.lucene.analysis.hunspell;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link org.apache.lucene.analysis.hunspell.SharedStemCache}
+ */
+public class SharedStemCacheTest {
+
+  /**
+   * Pass condition: a token that two threads missed at the same time is put twice into a full segment, and the second
+   *                 put replaces its stems instead of evicting the least recently used token to admit it again
+   */
+  @Test
+  public void testPut_alreadyCached() {
+    SharedStemCache cache = new SharedStemCache(2, 1);
+    char drink[] = "drink".toCharArray();
+    char drinks[] = "drinks".toCharArray();
+    char stems[][] = new char[][] { drink };
+
+    cache.get(drink, drink.length);
+    cache.put(drink, drink.length, stems);
+
+    cache.get(drinks, drinks.length);
+    cache.get(drinks, drinks.length);
+    cache.put(drinks, drinks.length, stems);
+    char otherStems[][] = new char[][] { drink };
+    cache.put(drinks, drinks.length, otherStems);
+
+    assertNotNull(cache.get(drink, drink.length));
+    assertSame(otherStems, cache.get(drinks, drinks.length));
+  }
+}
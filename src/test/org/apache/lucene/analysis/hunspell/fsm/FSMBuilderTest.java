@@ -0,0 +1,58 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link org.apache.lucene.analysis.hunspell.fsm.FSMBuilder}
+ */
+public class FSMBuilderTest {
+
+  /**
+   * Pass condition: the unsorted builder puts the nl_NL words in shuffled order, and then a word 32767 times, reusing
+   *                 the ints of the states it unregisters while changing them, so that the pool never spans more than
+   *                 twice the ints of the states it holds and a page
+   * @throws IOException Can be thrown while reading the dic file
+   */
+  @Test
+  public void testPut_unsortedReusesReleasedStates() throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        getClass().getResourceAsStream("/org/apache/lucene/analysis/hunspell/dicts/nl_NL/nl_NL.dic"), "ISO-8859-1"));
+    List<String> words = new ArrayList<String>();
+    reader.readLine();
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      int end = line.indexOf('/');
+      words.add(end < 0 ? line : line.substring(0, end));
+    }
+    reader.close();
+    Collections.shuffle(words, new Random(42));
+
+    FSMBuilder builder = FSM.builder();
+    Registry registry = builder.registry;
+    for (int i = 0; i < words.size(); i++) {
+      builder.put(words.get(i), i % 5);
+    }
+    assertTrue(registry.poolSize() <= 2 * registry.liveSize() + Registry.PAGE_SIZE);
+
+    for (int i = 0; i < 32767; i++) {
+      builder.put("drinking", i);
+      assertTrue(registry.poolSize() <= 2 * registry.liveSize() + Registry.PAGE_SIZE);
+    }
+
+    FSM automaton = builder.build();
+    for (String word : words) {
+      assertTrue(automaton.find(word.toCharArray(), 0, word.length()) >= 0);
+    }
+    assertEquals(32767, automaton.annotationCount(automaton.find("drinking".toCharArray(), 0, 8)));
+  }
+}
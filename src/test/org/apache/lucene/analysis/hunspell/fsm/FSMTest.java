@@ -0,0 +1,210 @@
+package org.apache.lucene.analysis.hunspell.fsm;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link org.apache.lucene.analysis.hunspell.fsm.FSM}
+ */
+public class FSMTest {
+
+  /**
+   * Pass condition: the allocation-free lookups over Strings and over ranges of char arrays find the longest accepted
+   *                 prefix and the lengths of all accepted prefixes of full matches, partial matches and misses
+   */
+  @Test
+  public void testLookup_stringsAndCharRanges() {
+    FSMBuilder builder = FSM.sortedBuilder();
+    builder.put("dr", 1);
+    builder.put("drink", 2);
+    builder.put("drinks", 3);
+    FSM automaton = builder.build();
+
+    FSM.Match match = new FSM.Match();
+    int lengths[] = new int[16];
+    char text[] = "xxdrinkerxx".toCharArray();
+
+    automaton.lookup("drinks", match);
+    assertEquals(6, match.getLength());
+    assertEquals(3, automaton.annotation(match.getState(), 0));
+    assertEquals(3, automaton.lookup2("drinks", lengths));
+    assertEquals(Arrays.asList(2, 5, 6), Arrays.asList(lengths[0], lengths[1], lengths[2]));
+
+    automaton.lookup("drinker", match);
+    assertEquals(5, match.getLength());
+    assertEquals(2, automaton.annotation(match.getState(), 0));
+    assertEquals(2, automaton.lookup2("drinker", lengths));
+    assertEquals(Arrays.asList(2, 5), Arrays.asList(lengths[0], lengths[1]));
+
+    automaton.lookup(text, 2, 7, match);
+    assertEquals(5, match.getLength());
+    assertEquals(2, automaton.annotation(match.getState(), 0));
+    assertEquals(2, automaton.lookup2(text, 2, 7, lengths));
+    assertEquals(Arrays.asList(2, 5), Arrays.asList(lengths[0], lengths[1]));
+
+    automaton.lookup(text, 2, 4, match);
+    assertEquals(2, match.getLength());
+    assertEquals(1, automaton.annotation(match.getState(), 0));
+    assertEquals(1, automaton.lookup2(text, 2, 4, lengths));
+    assertEquals(2, lengths[0]);
+
+    for (String miss : new String[] { "d", "xdrink" }) {
+      automaton.lookup(miss, match);
+      assertEquals(0, match.getLength());
+      assertEquals(0, automaton.lookup2(miss, lengths));
+    }
+    automaton.lookup(text, 0, 9, match);
+    assertEquals(0, match.getLength());
+    assertEquals(0, automaton.lookup2(text, 0, 9, lengths));
+  }
+
+  /**
+   * Pass condition: a word with 32767 annotations, the most a state holds, keeps them all, and building an automaton
+   *                 with a word of 32768 annotations fails instead of losing them
+   */
+  @Test
+  public void testBuild_annotationLimit() {
+    FSMBuilder builder = FSM.sortedBuilder();
+    for (int i = 0; i < 32767; i++) {
+      builder.put("ab", i);
+    }
+    FSM automaton = builder.build();
+    assertEquals(32767, automaton.annotationCount(automaton.find("ab".toCharArray(), 0, 2)));
+
+    builder = FSM.sortedBuilder();
+    for (int i = 0; i < 32768; i++) {
+      builder.put("ab", i);
+    }
+    boolean rejected = false;
+    try {
+      builder.build();
+    } catch (IllegalStateException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+  }
+
+  /**
+   * Pass condition: words of 100000 chars, far deeper than the thread stack allows recursing, are built into automata
+   *                 by both builders, found again and enumerated
+   */
+  @Test
+  public void testBuild_longWords() {
+    char word[] = new char[100000];
+    Arrays.fill(word, 'a');
+    String longWord = new String(word);
+    word[word.length - 1] = 'b';
+    String otherWord = new String(word);
+
+    for (FSMBuilder builder : new FSMBuilder[] { FSM.builder(), FSM.sortedBuilder() }) {
+      builder.put("a", 3);
+      builder.put(longWord, 1);
+      builder.put(otherWord, 2);
+      FSM automaton = builder.build();
+
+      assertEquals(2, automaton.annotation(automaton.find(word, 0, word.length), 0));
+      assertEquals(longWord.length(), automaton.lookup(longWord).getFirst().intValue());
+
+      final List<Integer> lengths = new ArrayList<Integer>();
+      automaton.visit(new FSM.Visitor() {
+        public void visit(char word[], int length, int state) {
+          lengths.add(length);
+        }
+      });
+      assertEquals(Arrays.asList(1, 100000, 100000), lengths);
+    }
+  }
+
+  /**
+   * Pass condition: automata with packed and with wide transitions are saved, and both the copy loaded into the heap
+   *                 and the memory mapped file find the same words with the same annotations
+   * @throws IOException Can be thrown while writing or reading the saved automaton
+   */
+  @Test
+  public void testSave_loadAndOpen() throws IOException {
+    for (int alphabetSize : new int[] { 200, 300 }) {
+      FSMBuilder builder = FSM.sortedBuilder();
+      for (int i = 0; i < alphabetSize; i++) {
+        builder.put(new String(new char[] { '\u4e00', (char) ('\u4e00' + i) }), i);
+      }
+
+      File saved = File.createTempFile("automaton", ".fsm");
+      saved.deleteOnExit();
+      builder.build().save(new FileOutputStream(saved));
+
+      for (FSM automaton : new FSM[] { FSM.load(new FileInputStream(saved)), FSM.open(saved) }) {
+        FSM.Match match = new FSM.Match();
+        for (int i = 0; i < alphabetSize; i++) {
+          automaton.lookup(new String(new char[] { '\u4e00', (char) ('\u4e00' + i), 'x' }), match);
+          assertEquals(2, match.getLength());
+          assertEquals(1, automaton.annotationCount(match.getState()));
+          assertEquals(i, automaton.annotation(match.getState(), 0));
+        }
+        assertEquals(-1, automaton.find(new char[] { '\u4e01' }, 0, 1));
+      }
+    }
+  }
+
+  /**
+   * Pass condition: saved automata that are truncated inside the alphabet, or whose alphabet size is negative or too
+   *                 large, and streams that do not start with the magic of a saved automaton, such as Java serialized
+   *                 objects, are rejected with an IOException
+   * @throws IOException Can be thrown while writing the saved automaton
+   */
+  @Test
+  public void testLoad_corruptAutomata() throws IOException {
+    FSMBuilder builder = FSM.sortedBuilder();
+    builder.put("drink", 1);
+    ByteArrayOutputStream saved = new ByteArrayOutputStream();
+    builder.build().save(saved);
+    byte bytes[] = saved.toByteArray();
+
+    List<ByteBuffer> corrupt = new ArrayList<ByteBuffer>();
+    corrupt.add(ByteBuffer.wrap(bytes, 0, 24));
+    for (int alphabetSize : new int[] { -1, 300, 70000 }) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(12, alphabetSize);
+      corrupt.add(buffer);
+    }
+
+    for (ByteBuffer buffer : corrupt) {
+      boolean rejected = false;
+      try {
+        FSM.load(buffer);
+      } catch (IOException e) {
+        rejected = true;
+      }
+      assertTrue(rejected);
+    }
+
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    ObjectOutputStream objects = new ObjectOutputStream(serialized);
+    objects.writeObject(new int[] { 0 });
+    objects.writeObject(new byte[Character.MAX_VALUE + 1]);
+    objects.close();
+    boolean rejected = false;
+    try {
+      FSM.load(new ByteArrayInputStream(serialized.toByteArray()));
+    } catch (IOException e) {
+      rejected = true;
+    }
+    assertTrue(rejected);
+
+    assertEquals(1, FSM.load(ByteBuffer.wrap(bytes)).lookup("drink").getSecond()[0]);
+  }
+}